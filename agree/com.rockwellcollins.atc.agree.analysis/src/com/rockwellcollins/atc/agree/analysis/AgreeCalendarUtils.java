@@ -9,7 +9,6 @@ import java.util.Map;
 
 import jkind.lustre.BinaryExpr;
 import jkind.lustre.BinaryOp;
-import jkind.lustre.BoolExpr;
 import jkind.lustre.Equation;
 import jkind.lustre.Expr;
 import jkind.lustre.IdExpr;
@@ -23,9 +22,9 @@ import jkind.lustre.UnaryExpr;
 import jkind.lustre.UnaryOp;
 import jkind.lustre.VarDecl;
 
-public class AgreeCalendarUtils {
+import com.rockwellcollins.atc.agree.analysis.lustre.LustreExprUtil;
 
-    static private String dfaName = null;
+public class AgreeCalendarUtils {
 
     static public Node getMNCalendar(String nodeName, int max, int min) {
         if (max < min || max < 1 || min < 1) {
@@ -250,28 +249,40 @@ public class AgreeCalendarUtils {
         equations.add(clockCountEq);
 
         // create constraints for which calendar element is ticking
-        Expr calendarConstraint = new BoolExpr(true);
+        List<Expr> clockConstraints = new ArrayList<>();
         for (Expr clockExpr : clocks) {
             IdExpr clockId = (IdExpr) clockExpr;
             List<Integer> ticks = clockTickMap.get(clockId.id);
-            Expr clockTicking = new BoolExpr(false);
+            List<Expr> tickValues = new ArrayList<>();
             for (Integer tick : ticks) {
-                Expr clockIsTickValue = new BinaryExpr(clockCountId, BinaryOp.EQUAL,
-                        new IntExpr(BigInteger.valueOf(tick.longValue())));
-                clockTicking = new BinaryExpr(clockTicking, BinaryOp.OR, clockIsTickValue);
+                tickValues.add(new BinaryExpr(clockCountId, BinaryOp.EQUAL,
+                        new IntExpr(BigInteger.valueOf(tick.longValue()))));
             }
-            Expr ifExpr = new IfThenElseExpr(clockTicking, clockId, new UnaryExpr(UnaryOp.NOT, clockId));
-            calendarConstraint = new BinaryExpr(calendarConstraint, BinaryOp.AND, ifExpr);
+            Expr clockTicking = LustreExprUtil.or(tickValues);
+            clockConstraints.add(
+                    new IfThenElseExpr(clockTicking, clockId, new UnaryExpr(UnaryOp.NOT, clockId)));
         }
-        Equation outEq = new Equation(outputAssert, calendarConstraint);
+        Equation outEq = new Equation(outputAssert, LustreExprUtil.and(clockConstraints));
         equations.add(outEq);
 
         return new Node(nodeName, inputs, outputs, locals, equations);
     }
 
     static public Node getCalendarNode(String name, String dfaName, int numClks) {
+        return getCalendarNode(name, dfaName, numClks, false);
+    }
+
+    /**
+     * Builds a node that relates its clocks with the given DFA node. If
+     * {@code againstReference} is set, every clock is related to the first
+     * clock only, which takes a number of DFA calls linear in the number of
+     * clocks instead of one call per pair. Every trace that satisfies the
+     * pairwise constraint satisfies this one, so it is a sound but weaker
+     * assumption.
+     */
+    static public Node getCalendarNode(String name, String dfaName, int numClks, boolean againstReference) {
         Node calendarNode;
-        Expr nodeExpr = null;
+        List<Expr> dfaExprs = new ArrayList<>();
         String clkVarPrefix = "_clk_";
         IdExpr outVar = new IdExpr("_out");
 
@@ -286,41 +297,56 @@ public class AgreeCalendarUtils {
         List<VarDecl> outputs = new ArrayList<>();
         outputs.add(new VarDecl(outVar.id, NamedType.BOOL));
 
-        for (int i = 0; i < clks.size() - 1; i++) {
+        int numRefs = againstReference ? Math.min(1, clks.size() - 1) : clks.size() - 1;
+        for (int i = 0; i < numRefs; i++) {
             Expr clk0 = clks.get(i);
             for (int j = i + 1; j < clks.size(); j++) {
                 Expr clk1 = clks.get(j);
-                Expr dfaExpr = getDFAExpr(dfaName, clk0, clk1);
-                if (nodeExpr == null) {
-                    nodeExpr = dfaExpr;
-                } else {
-                    nodeExpr = new BinaryExpr(nodeExpr, BinaryOp.AND, dfaExpr);
-                }
+                dfaExprs.add(getDFAExpr(dfaName, clk0, clk1));
             }
         }
 
-        Equation nodeEq = new Equation(outVar, nodeExpr);
+        Equation nodeEq = new Equation(outVar, LustreExprUtil.and(dfaExprs));
         calendarNode =
                 new Node(name, inputs, outputs, new ArrayList<VarDecl>(), Collections.singletonList(nodeEq));
 
-        dfaName = null;
-
         return calendarNode;
     }
 
+    /**
+     * Conjoins calls to an MN calendar node that relate the given clocks in
+     * both directions. With {@code againstReference} set, every clock is
+     * related to the first clock only instead of to every other clock, so the
+     * constraint has a number of calls linear in the number of clocks. It
+     * admits every trace of the pairwise constraint and possibly more.
+     */
+    static public Expr getMNCalendarConstraint(String nodeName, List<Expr> clks, boolean againstReference) {
+        List<Expr> calls = new ArrayList<>();
+        int numRefs = againstReference ? Math.min(1, clks.size()) : clks.size();
+        for (int i = 0; i < numRefs; i++) {
+            Expr clk0 = clks.get(i);
+            for (int j = i + 1; j < clks.size(); j++) {
+                Expr clk1 = clks.get(j);
+                calls.add(new NodeCallExpr(nodeName, clk0, clk1));
+                calls.add(new NodeCallExpr(nodeName, clk1, clk0));
+            }
+        }
+        return LustreExprUtil.and(calls);
+    }
+
     static public List<Equation> getAllClksHaveTicked(String name, String clkPref, List<Expr> clks) {
 
-        Expr result = new BoolExpr(true);
+        List<Expr> ticked = new ArrayList<>();
         List<Equation> eqs = new ArrayList<>();
 
         int i = 0;
         for (Expr clk : clks) {
             Equation clkHasTicked = getClkHasTicked(new IdExpr(clkPref + i), clk);
-            result = new BinaryExpr(result, BinaryOp.AND, clkHasTicked.lhs.get(0));
+            ticked.add(clkHasTicked.lhs.get(0));
             eqs.add(clkHasTicked);
             i++;
         }
-        eqs.add(new Equation(new IdExpr(name), result));
+        eqs.add(new Equation(new IdExpr(name), LustreExprUtil.and(ticked)));
         return eqs;
 
     }
@@ -590,19 +616,19 @@ public class AgreeCalendarUtils {
 
     public static Expr getSingleTick(List<Expr> clocks) {
 
-        Expr returnExpr = new BoolExpr(false);
+        List<Expr> singleTicks = new ArrayList<>();
         for (Expr clock0 : clocks) {
-            Expr tickExpr = clock0;
+            List<Expr> tickExprs = new ArrayList<>();
+            tickExprs.add(clock0);
             for (Expr clock1 : clocks) {
                 if (clock0 != clock1) {
-                    Expr notClock1 = new UnaryExpr(UnaryOp.NOT, clock1);
-                    tickExpr = new BinaryExpr(tickExpr, BinaryOp.AND, notClock1);
+                    tickExprs.add(new UnaryExpr(UnaryOp.NOT, clock1));
                 }
             }
-            returnExpr = new BinaryExpr(tickExpr, BinaryOp.OR, returnExpr);
+            singleTicks.add(LustreExprUtil.and(tickExprs));
         }
 
-        return returnExpr;
+        return LustreExprUtil.or(singleTicks);
     }
 
 }
@@ -1,6 +1,7 @@
 package com.rockwellcollins.atc.agree.analysis;
 
-import java.util.Collections;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -27,147 +28,256 @@ import jkind.lustre.TupleExpr;
 import jkind.lustre.UnaryExpr;
 import jkind.lustre.UnaryOp;
 
+/**
+ * Gathers the variables an expression depends on in the current step, that
+ * is, outside of {@code pre}. A record access contributes its field to the
+ * ids it is applied to. The expression is walked with an explicit work list
+ * instead of recursion, so arbitrarily deep expressions do not overflow the
+ * stack.
+ */
 public class AgreeCycleVisitor implements jkind.lustre.visitors.ExprVisitor<Set<String>> {
 
+    private Set<String> gather(Expr root) {
+        Step step = new Step();
+        step.schedule(root, "");
+        while (!step.worklist.isEmpty()) {
+            step.suffix = step.suffixes.pop();
+            step.worklist.pop().accept(step);
+        }
+        return step.ids;
+    }
+
     @Override
     public Set<String> visit(BinaryExpr e) {
-        // TODO Auto-generated method stub
-        Set<String> leftSet = e.left.accept(this);
-        Set<String> rightSet = e.right.accept(this);
-
-        leftSet.addAll(rightSet);
-        return leftSet;
+        return gather(e);
     }
 
     @Override
     public Set<String> visit(BoolExpr e) {
-        // TODO Auto-generated method stub
-        return new HashSet<>();
+        return gather(e);
     }
 
     @Override
     public Set<String> visit(IdExpr e) {
-        return new HashSet<>(Collections.singletonList(e.id));
+        return gather(e);
     }
 
     @Override
     public Set<String> visit(IfThenElseExpr e) {
-        Set<String> condSet = e.cond.accept(this);
-        Set<String> thenSet = e.thenExpr.accept(this);
-        Set<String> elseSet = e.elseExpr.accept(this);
-
-        condSet.addAll(thenSet);
-        condSet.addAll(elseSet);
-
-        return condSet;
+        return gather(e);
     }
 
     @Override
     public Set<String> visit(IntExpr e) {
-        return new HashSet<>();
+        return gather(e);
     }
 
     @Override
     public Set<String> visit(NodeCallExpr e) {
-        // TODO this may generate false positives
-        HashSet<String> argSet = new HashSet<>();
-        for (Expr expr : e.args) {
-            argSet.addAll(expr.accept(this));
-        }
-        return argSet;
+        return gather(e);
     }
 
     @Override
     public Set<String> visit(RecordAccessExpr e) {
-        Set<String> visits = e.record.accept(this);
-
-        Set<String> returnSet = new HashSet<>();
-        for (String str : visits) {
-            returnSet.add(str + "." + e.field);
-        }
-
-        return returnSet;
+        return gather(e);
     }
 
     @Override
     public Set<String> visit(RealExpr e) {
-        return new HashSet<>();
+        return gather(e);
     }
 
     @Override
     public Set<String> visit(RecordExpr e) {
-        Set<String> visits = new HashSet<>();
-
-        for (Entry<String, Expr> field : e.fields.entrySet()) {
-            visits.addAll(field.getValue().accept(this));
-        }
-        return visits;
+        return gather(e);
     }
 
     @Override
     public Set<String> visit(UnaryExpr e) {
-        if (e.op.equals(UnaryOp.PRE)) {
-            return new HashSet<>();
-        }
-        return e.expr.accept(this);
+        return gather(e);
     }
 
     @Override
     public Set<String> visit(CondactExpr e) {
-        Set<String> argSet = new HashSet<>();
-
-        for (Expr argExpr : e.args) {
-            argSet.addAll(argExpr.accept(this));
-        }
-        argSet.addAll(e.call.accept(this));
-
-        return argSet;
+        return gather(e);
     }
 
     @Override
     public Set<String> visit(ArrayAccessExpr e) {
-        throw new AgreeException("Array Access Expressions are not handled in the cycle visitor");
+        return gather(e);
     }
 
     @Override
     public Set<String> visit(ArrayExpr e) {
-        throw new AgreeException("Array Expressions are not handled in the cycle visitor");
-
+        return gather(e);
     }
 
     @Override
     public Set<String> visit(ArrayUpdateExpr e) {
-        throw new AgreeException("Array Update Expressiosn are not handled in the cycle visitor");
+        return gather(e);
     }
 
     @Override
     public Set<String> visit(CastExpr e) {
-        return e.expr.accept(this);
+        return gather(e);
     }
 
     @Override
     public Set<String> visit(RecordUpdateExpr e) {
-        Set<String> visits = new HashSet<>();
-        visits.addAll(e.record.accept(this));
-        visits.addAll(e.value.accept(this));
-
-        return visits;
+        return gather(e);
     }
 
     @Override
     public Set<String> visit(TupleExpr e) {
-        throw new AgreeException("Type Expressions are not handled in the cycle visitor");
-
+        return gather(e);
     }
 
     @Override
     public Set<String> visit(InductDataExpr e) {
-        throw new AgreeException("We do not support Quantified Expressions or Inductive Datatypes");
+        return gather(e);
     }
 
     @Override
     public Set<String> visit(QuantExpr e) {
-        throw new AgreeException("We do not support Quantified Expressions or Inductive Datatypes");
+        return gather(e);
     }
 
+    /**
+     * Adds the id of a single expression, or schedules its children with
+     * the record fields accessed on the way down to them.
+     */
+    private static class Step implements jkind.lustre.visitors.ExprVisitor<Void> {
+        private final Set<String> ids = new HashSet<>();
+        private final Deque<Expr> worklist = new ArrayDeque<>();
+        private final Deque<String> suffixes = new ArrayDeque<>();
+        private String suffix;
+
+        private void schedule(Expr e, String suffix) {
+            worklist.push(e);
+            suffixes.push(suffix);
+        }
+
+        private void schedule(Expr e) {
+            schedule(e, suffix);
+        }
+
+        @Override
+        public Void visit(BinaryExpr e) {
+            schedule(e.left);
+            schedule(e.right);
+            return null;
+        }
+
+        @Override
+        public Void visit(BoolExpr e) {
+            return null;
+        }
+
+        @Override
+        public Void visit(IdExpr e) {
+            ids.add(e.id + suffix);
+            return null;
+        }
+
+        @Override
+        public Void visit(IfThenElseExpr e) {
+            schedule(e.cond);
+            schedule(e.thenExpr);
+            schedule(e.elseExpr);
+            return null;
+        }
+
+        @Override
+        public Void visit(IntExpr e) {
+            return null;
+        }
+
+        @Override
+        public Void visit(NodeCallExpr e) {
+            // TODO this may generate false positives
+            for (Expr expr : e.args) {
+                schedule(expr);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(RecordAccessExpr e) {
+            schedule(e.record, "." + e.field + suffix);
+            return null;
+        }
+
+        @Override
+        public Void visit(RealExpr e) {
+            return null;
+        }
+
+        @Override
+        public Void visit(RecordExpr e) {
+            for (Entry<String, Expr> field : e.fields.entrySet()) {
+                schedule(field.getValue());
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(UnaryExpr e) {
+            if (!e.op.equals(UnaryOp.PRE)) {
+                schedule(e.expr);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(CondactExpr e) {
+            for (Expr argExpr : e.args) {
+                schedule(argExpr);
+            }
+            schedule(e.call);
+            return null;
+        }
+
+        @Override
+        public Void visit(ArrayAccessExpr e) {
+            throw new AgreeException("Array Access Expressions are not handled in the cycle visitor");
+        }
+
+        @Override
+        public Void visit(ArrayExpr e) {
+            throw new AgreeException("Array Expressions are not handled in the cycle visitor");
+        }
+
+        @Override
+        public Void visit(ArrayUpdateExpr e) {
+            throw new AgreeException("Array Update Expressiosn are not handled in the cycle visitor");
+        }
+
+        @Override
+        public Void visit(CastExpr e) {
+            schedule(e.expr);
+            return null;
+        }
+
+        @Override
+        public Void visit(RecordUpdateExpr e) {
+            schedule(e.record);
+            schedule(e.value);
+            return null;
+        }
+
+        @Override
+        public Void visit(TupleExpr e) {
+            throw new AgreeException("Type Expressions are not handled in the cycle visitor");
+        }
+
+        @Override
+        public Void visit(InductDataExpr e) {
+            throw new AgreeException("We do not support Quantified Expressions or Inductive Datatypes");
+        }
+
+        @Override
+        public Void visit(QuantExpr e) {
+            throw new AgreeException("We do not support Quantified Expressions or Inductive Datatypes");
+        }
+    }
 }
@@ -4,24 +4,24 @@ public class AgreeLogger {
     private static StringBuilder log = new StringBuilder();
     private static String newline = System.getProperty("line.separator");
 
-    public static void logWarning(String message) {
+    public static synchronized void logWarning(String message) {
         log.append("[WARNING]: ");
         log.append(message);
         log.append(newline);
     }
 
-    public static void logError(String message) {
+    public static synchronized void logError(String message) {
         log.append("[ERROR]: ");
         log.append(message);
         log.append(newline);
     }
 
-    public static String getLog() {
+    public static synchronized String getLog() {
         return log.toString();
     }
 
     @Override
     public String toString() {
-        return log.toString();
+        return getLog();
     }
 }
@@ -1,10 +1,9 @@
 package com.rockwellcollins.atc.agree.analysis;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -39,6 +38,7 @@ import org.osate.xtext.aadl2.properties.util.PropertyUtils;
 import com.rockwellcollins.atc.agree.agree.AgreePackage;
 import com.rockwellcollins.atc.agree.agree.FnCallExpr;
 import com.rockwellcollins.atc.agree.agree.NestedDotID;
+import com.rockwellcollins.atc.agree.validation.GraphCycles;
 import com.rockwellcollins.atc.agree.analysis.preferences.PreferenceConstants;
 
 public class AgreeUtils {
@@ -195,78 +195,75 @@ public class AgreeUtils {
     // warns the user if there is a cycle
     static public void logCycleWarning(List<Equation> eqs, AgreeRenaming agreeRename,
             boolean throwException) {
-        Map<String, Set<String>> idGraph = new HashMap<>();
+        // number the defined ids and keep the dependencies of each one as
+        // the numbers of the defined ids it refers to in the current step
+        Map<String, Integer> index = new HashMap<>();
         List<String> ids = new ArrayList<>();
-        AgreeCycleVisitor visitor = new AgreeCycleVisitor();
-
         for (Equation eq : eqs) {
             for (IdExpr id : eq.lhs) {
-                ids.add(id.id);
-                idGraph.put(id.id, eq.expr.accept(visitor));
+                if (!index.containsKey(id.id)) {
+                    index.put(id.id, ids.size());
+                    ids.add(id.id);
+                }
             }
         }
 
-        Set<String> discovered = new HashSet<>();
+        int[][] graph = new int[ids.size()][];
+        AgreeCycleVisitor visitor = new AgreeCycleVisitor();
+        for (Equation eq : eqs) {
+            Set<String> deps = eq.expr.accept(visitor);
+            int[] succs = new int[deps.size()];
+            int numSuccs = 0;
+            for (String dep : deps) {
+                Integer i = index.get(dep);
+                if (i != null) {
+                    succs[numSuccs++] = i;
+                }
+            }
+            succs = Arrays.copyOf(succs, numSuccs);
+            for (IdExpr id : eq.lhs) {
+                graph[index.get(id.id)] = succs;
+            }
+        }
 
+        boolean foundCycle = false;
         StringBuilder exceptionStr = new StringBuilder();
-        for (String id : ids) {
-            if (discovered.contains(id)) {
+        for (int[] component : GraphCycles.getStronglyConnectedComponents(graph)) {
+            List<Integer> cycle = GraphCycles.getCycle(graph, component);
+            if (cycle == null) {
                 continue;
             }
-            List<String> cycle = cycleWarning_Helper(id, new HashSet<String>(), idGraph);
-
-            if (cycle != null) {
-                discovered.addAll(cycle);
-                String aadlString = agreeRename.rename(id);
-                StringBuilder cycleStr = new StringBuilder("Possible cycle: " + aadlString);
-
-                String sep = " -> ";
-                for (String cycleId : cycle) {
-                    cycleStr.append(sep);
-                    aadlString = agreeRename.rename(cycleId);
-                    cycleStr.append(aadlString);
+            foundCycle = true;
+
+            StringBuilder cycleStr = new StringBuilder("Possible cycle: ");
+            String sep = "";
+            for (int i : cycle) {
+                cycleStr.append(sep);
+                cycleStr.append(agreeRename.rename(ids.get(i)));
+                sep = " -> ";
+            }
+            cycleStr.append(sep);
+            cycleStr.append(agreeRename.rename(ids.get(cycle.get(0))));
+            Set<Integer> onCycle = new HashSet<>(cycle);
+            if (component.length > onCycle.size()) {
+                cycleStr.append(" (also involves");
+                sep = " ";
+                for (int i : component) {
+                    if (!onCycle.contains(i)) {
+                        cycleStr.append(sep);
+                        cycleStr.append(agreeRename.rename(ids.get(i)));
+                        sep = ", ";
+                    }
                 }
-
-                AgreeLogger.logWarning(cycleStr.toString());
-                exceptionStr.append(cycleStr);
+                cycleStr.append(")");
             }
-        }
-        if (throwException && !discovered.isEmpty()) {
-            throw new AgreeCombinationalCycleException(exceptionStr.toString());
-        }
-    }
 
-    static public LinkedList<String> cycleWarning_Helper(String visit, Set<String> visited,
-            Map<String, Set<String>> graph) {
-
-        if (visited.contains(visit)) {
-            return null;
+            AgreeLogger.logWarning(cycleStr.toString());
+            exceptionStr.append(cycleStr);
         }
-
-        visited.add(visit);
-
-        Set<String> toVisit = graph.get(visit);
-
-        if (toVisit != null) {
-
-            LinkedList<String> intersection = new LinkedList<>(toVisit);
-            intersection.retainAll(visited);
-            if (intersection.size() != 0) {
-                String firstLink = intersection.getFirst();
-                return new LinkedList<>(Collections.singletonList(firstLink));
-            }
-
-            for (String nextVisit : toVisit) {
-                LinkedList<String> cycle = cycleWarning_Helper(nextVisit, visited, graph);
-                if (cycle != null) {
-                    cycle.push(nextVisit);
-                    return cycle;
-                }
-            }
+        if (throwException && foundCycle) {
+            throw new AgreeCombinationalCycleException(exceptionStr.toString());
         }
-        visited.remove(visit);
-
-        return null;
     }
 
     public static boolean containsTransitiveAgreeAnnex(ComponentInstance compInst) {
@@ -32,6 +32,7 @@ import com.rockwellcollins.atc.agree.analysis.ast.AgreeStatement;
 import com.rockwellcollins.atc.agree.analysis.ast.AgreeVar;
 import com.rockwellcollins.atc.agree.analysis.ast.AgreeConnection.ConnectionType;
 import com.rockwellcollins.atc.agree.analysis.ast.AgreeNode.TimingModel;
+import com.rockwellcollins.atc.agree.analysis.lustre.LustreExprUtil;
 import com.rockwellcollins.atc.agree.analysis.lustre.visitors.IdRewriteVisitor;
 import com.rockwellcollins.atc.agree.analysis.lustre.visitors.IdRewriter;
 import com.rockwellcollins.atc.agree.analysis.preferences.PreferenceConstants;
@@ -59,7 +60,6 @@ import jkind.lustre.VarDecl;
 
 public class LustreAstBuilder {
 
-    protected static List<Node> nodes;
     protected static final String guarSuffix = "__GUARANTEE";
     protected static final String assumeSuffix = "__ASSUME";
     protected static final String lemmaSuffix = "__LEMMA";
@@ -176,14 +176,14 @@ public class LustreAstBuilder {
     
     public static Program getAssumeGuaranteeLustreProgram(AgreeProgram agreeProgram, boolean monolithic) {
 
-        nodes = new ArrayList<>();
+        LustreBuildContext context = new LustreBuildContext();
         List<TypeDef> types = new ArrayList<>();
         for (Type type : agreeProgram.globalTypes) {
             RecordType recType = (RecordType) type;
             types.add(new TypeDef(recType.id, type));
         }
 
-        AgreeNode flatNode = flattenAgreeNode(agreeProgram.topNode, "_TOP__", monolithic);
+        AgreeNode flatNode = flattenAgreeNode(context, agreeProgram.topNode, "_TOP__", monolithic);
         List<Expr> assertions = new ArrayList<>();
         List<VarDecl> locals = new ArrayList<>();
         List<VarDecl> inputs = new ArrayList<>();
@@ -225,6 +225,7 @@ public class LustreAstBuilder {
         }
 
         Node main = new Node("main", inputs, null, locals, equations, properties, assertions);
+        List<Node> nodes = context.nodes.getNodes();
         nodes.add(main);
         nodes.addAll(agreeProgram.globalLustreNodes);
         Program program = new Program(types, null, nodes, main.id);
@@ -243,9 +244,12 @@ public class LustreAstBuilder {
             types.add(new TypeDef(recType.id, type));
         }
 
-        nodes = new ArrayList<>();
-        Node topConsist = getConsistencyLustreNode(agreeProgram.topNode, false);
+        IPreferenceStore prefs = Activator.getDefault().getPreferenceStore();
+        int consistDepth = prefs.getInt(PreferenceConstants.PREF_CONSIST_DEPTH);
+
+        Node topConsist = getConsistencyLustreNode(agreeProgram.topNode, false, consistDepth);
         // we don't want node lemmas to show up in the consistency check
+        List<Node> nodes = new ArrayList<>();
         for (Node node : agreeProgram.globalLustreNodes) {
             nodes.add(removeProperties(node));
         }
@@ -256,11 +260,12 @@ public class LustreAstBuilder {
         programs.add(Tuples.create("This component consistent", topConsistProg));
 
         for (AgreeNode subNode : agreeProgram.topNode.subNodes) {
-            nodes = new ArrayList<>();
+            LustreBuildContext subContext = new LustreBuildContext();
             if (monolithic) {
-                subNode = flattenAgreeNode(subNode, "_TOP__", true);
+                subNode = flattenAgreeNode(subContext, subNode, "_TOP__", true);
             }
-            Node subConsistNode = getConsistencyLustreNode(subNode, monolithic);
+            Node subConsistNode = getConsistencyLustreNode(subNode, monolithic, consistDepth);
+            nodes = subContext.nodes.getNodes();
             for (Node node : agreeProgram.globalLustreNodes) {
                 nodes.add(removeProperties(node));
             }
@@ -270,10 +275,12 @@ public class LustreAstBuilder {
             programs.add(Tuples.create(subNode.id + " consistent", subConsistProg));
         }
 
-        nodes = new ArrayList<>();
-        AgreeNode compositionNode = flattenAgreeNode(agreeProgram.topNode, "_TOP__", monolithic);
+        LustreBuildContext compositionContext = new LustreBuildContext();
+        AgreeNode compositionNode =
+                flattenAgreeNode(compositionContext, agreeProgram.topNode, "_TOP__", monolithic);
 
-        Node topCompositionConsist = getConsistencyLustreNode(compositionNode, true);
+        Node topCompositionConsist = getConsistencyLustreNode(compositionNode, true, consistDepth);
+        nodes = compositionContext.nodes.getNodes();
         for (Node node : agreeProgram.globalLustreNodes) {
             nodes.add(removeProperties(node));
         }
@@ -291,7 +298,8 @@ public class LustreAstBuilder {
         return new Node(node.id, node.inputs, node.outputs, node.locals, node.equations);
     }
 
-    protected static Node getConsistencyLustreNode(AgreeNode agreeNode, boolean withAssertions) {
+    protected static Node getConsistencyLustreNode(AgreeNode agreeNode, boolean withAssertions,
+            int consistDepth) {
 
         List<Expr> assertions = new ArrayList<>();
         List<VarDecl> locals = new ArrayList<>();
@@ -299,14 +307,14 @@ public class LustreAstBuilder {
         List<Equation> equations = new ArrayList<>();
         List<String> properties = new ArrayList<>();
 
-        Expr stuffConj = new BoolExpr(true);
+        List<Expr> stuff = new ArrayList<>();
 
         for (AgreeStatement assumption : agreeNode.assumptions) {
-            stuffConj = new BinaryExpr(stuffConj, BinaryOp.AND, assumption.expr);
+            stuff.add(assumption.expr);
         }
 
         for (AgreeStatement guarantee : agreeNode.guarantees) {
-            stuffConj = new BinaryExpr(stuffConj, BinaryOp.AND, guarantee.expr);
+            stuff.add(guarantee.expr);
         }
 
         // TODO should we include lemmas in the consistency check?
@@ -316,7 +324,7 @@ public class LustreAstBuilder {
 
         if (withAssertions) {
             for (AgreeStatement assertion : agreeNode.assertions) {
-                stuffConj = new BinaryExpr(stuffConj, BinaryOp.AND, assertion.expr);
+                stuff.add(assertion.expr);
             }
         } else {
             // perhaps we should break out eq statements into implementation
@@ -324,10 +332,11 @@ public class LustreAstBuilder {
             // and type equations. This would clear this up
             for (AgreeStatement assertion : agreeNode.assertions) {
                 if (statementIsContractEqOrProperty(assertion)) {
-                    stuffConj = new BinaryExpr(stuffConj, BinaryOp.AND, assertion.expr);
+                    stuff.add(assertion.expr);
                 }
             }
         }
+        Expr stuffConj = LustreExprUtil.and(stuff);
 
         for (AgreeVar var : agreeNode.inputs) {
             inputs.add(var);
@@ -366,11 +375,8 @@ public class LustreAstBuilder {
         countExpr = new BinaryExpr(new IntExpr(BigInteger.ZERO), BinaryOp.ARROW, countExpr);
         equations.add(new Equation(countId, countExpr));
 
-        IPreferenceStore prefs = Activator.getDefault().getPreferenceStore();
-        int consistDetph = prefs.getInt(PreferenceConstants.PREF_CONSIST_DEPTH);
-
         Expr propExpr =
-                new BinaryExpr(countId, BinaryOp.EQUAL, new IntExpr(BigInteger.valueOf(consistDetph)));
+                new BinaryExpr(countId, BinaryOp.EQUAL, new IntExpr(BigInteger.valueOf(consistDepth)));
         propExpr = new BinaryExpr(propExpr, BinaryOp.AND, histId);
         equations.add(new Equation(propId, new UnaryExpr(UnaryOp.NOT, propExpr)));
         properties.add(propId.id);
@@ -438,14 +444,14 @@ public class LustreAstBuilder {
         List<Equation> equations = new ArrayList<>();
         List<Expr> assertions = new ArrayList<>();
 
-        Expr assumeConjExpr = new BoolExpr(true);
+        List<Expr> assumeIds = new ArrayList<>();
         int i = 0;
         for (AgreeStatement statement : agreeNode.assumptions) {
             String inputName = assumeSuffix + i++;
             inputs.add(new AgreeVar(inputName, NamedType.BOOL, statement.reference, agreeNode.compInst));
             IdExpr assumeId = new IdExpr(inputName);
             assertions.add(new BinaryExpr(assumeId, BinaryOp.EQUAL, statement.expr));
-            assumeConjExpr = new BinaryExpr(assumeId, BinaryOp.AND, assumeConjExpr);
+            assumeIds.add(assumeId);
         }
 
         int j = 0;
@@ -466,18 +472,19 @@ public class LustreAstBuilder {
         locals.add(new VarDecl(assumeHistName, NamedType.BOOL));
         locals.add(new VarDecl(assumeConjName, NamedType.BOOL));
 
-        equations.add(new Equation(assumeConjId, assumeConjExpr));
+        equations.add(new Equation(assumeConjId, LustreExprUtil.and(assumeIds)));
         equations.add(getHist(assumeHistId, assumeConjId));
 
-        Expr guarConjExpr = new BoolExpr(true);
+        List<Expr> guars = new ArrayList<>();
         for (AgreeStatement statement : agreeNode.guarantees) {
-            guarConjExpr = new BinaryExpr(statement.expr, BinaryOp.AND, guarConjExpr);
+            guars.add(statement.expr);
         }
         if (monolithic) {
             for (AgreeStatement statement : agreeNode.lemmas) {
-                guarConjExpr = new BinaryExpr(statement.expr, BinaryOp.AND, guarConjExpr);
+                guars.add(statement.expr);
             }
         }
+        Expr guarConjExpr = LustreExprUtil.and(guars);
         assertions.add(new BinaryExpr(assumeHistId, BinaryOp.IMPLIES, guarConjExpr));
 
         // we only add the assertions of an agreenode if we are performing
@@ -489,10 +496,7 @@ public class LustreAstBuilder {
             }
         }
 
-        Expr assertExpr = new BoolExpr(true);
-        for (Expr expr : assertions) {
-            assertExpr = new BinaryExpr(expr, BinaryOp.AND, assertExpr);
-        }
+        Expr assertExpr = LustreExprUtil.and(assertions);
 
         String outputName = "__ASSERT";
         List<VarDecl> outputs = new ArrayList<>();
@@ -510,37 +514,34 @@ public class LustreAstBuilder {
         return new Node(nodePrefix + agreeNode.id, inputs, outputs, locals, equations);
     }
 
-    protected static AgreeNode flattenAgreeNode(AgreeNode agreeNode, String nodePrefix, boolean monolithic) {
+    protected static AgreeNode flattenAgreeNode(LustreBuildContext context, AgreeNode agreeNode,
+            String nodePrefix, boolean monolithic) {
 
         List<AgreeVar> inputs = new ArrayList<>();
         List<AgreeVar> outputs = new ArrayList<>();
         List<AgreeVar> locals = new ArrayList<>();
         List<AgreeStatement> assertions = new ArrayList<>();
 
-        Expr someoneTicks = null;
+        List<Expr> clockExprs = new ArrayList<>();
         for (AgreeNode subAgreeNode : agreeNode.subNodes) {
             String prefix = subAgreeNode.id + AgreeASTBuilder.dotChar;
             Expr clockExpr = getClockExpr(agreeNode, subAgreeNode);
 
-            if (someoneTicks == null) {
-                someoneTicks = clockExpr;
-            } else {
-                someoneTicks = new BinaryExpr(someoneTicks, BinaryOp.OR, clockExpr);
-            }
+            clockExprs.add(clockExpr);
 
             AgreeNode flatNode;
             if (monolithic) {
-                flatNode = flattenAgreeNode(subAgreeNode,
+                flatNode = flattenAgreeNode(context, subAgreeNode,
                         nodePrefix + subAgreeNode.id + AgreeASTBuilder.dotChar, monolithic);
             } else {
                 flatNode = subAgreeNode;
             }
 
-            Node lustreNode = addSubNodeLustre(agreeNode, nodePrefix, flatNode, monolithic);
+            Node lustreNode = addSubNodeLustre(context, agreeNode, nodePrefix, flatNode, monolithic);
 
             addInputsAndOutputs(inputs, outputs, flatNode, lustreNode, prefix, monolithic);
 
-            addCondactCall(agreeNode, nodePrefix, inputs, assertions, flatNode, prefix, clockExpr,
+            addCondactCall(context, agreeNode, nodePrefix, inputs, assertions, flatNode, prefix, clockExpr,
                     lustreNode);
 
             addClockHolds(agreeNode, assertions, flatNode, clockExpr, prefix, lustreNode);
@@ -550,10 +551,10 @@ public class LustreAstBuilder {
         }
 
         if (agreeNode.timing == TimingModel.ASYNC) {
-            if (someoneTicks == null) {
+            if (clockExprs.isEmpty()) {
                 throw new AgreeException("Somehow we generated a clock constraint without any clocks");
             }
-            assertions.add(new AgreeStatement("someone ticks", someoneTicks, null));
+            assertions.add(new AgreeStatement("someone ticks", LustreExprUtil.or(clockExprs), null));
         }
 
         addConnectionConstraints(agreeNode, assertions);
@@ -565,9 +566,9 @@ public class LustreAstBuilder {
         outputs.addAll(agreeNode.outputs);
         locals.addAll(agreeNode.locals);
 
-        return new AgreeNode(agreeNode.id, inputs, outputs, locals, null, agreeNode.subNodes, assertions,
-                agreeNode.assumptions, agreeNode.guarantees, agreeNode.lemmas, new BoolExpr(true),
-                agreeNode.initialConstraint, agreeNode.clockVar, agreeNode.reference, null,
+        return new AgreeNode(agreeNode.id, inputs, outputs, locals, null, agreeNode.subNodes,
+                context.intern(assertions), agreeNode.assumptions, agreeNode.guarantees, agreeNode.lemmas,
+                new BoolExpr(true), agreeNode.initialConstraint, agreeNode.clockVar, agreeNode.reference, null,
                 agreeNode.compInst);
     }
 
@@ -624,16 +625,15 @@ public class LustreAstBuilder {
 
             // we also need to add hold expressions for the assumptions and
             // lemmas
-            Expr assumeLemmaTrue = new BoolExpr(true);
+            List<Expr> assumeLemmaIds = new ArrayList<>();
             for (VarDecl lustreVar : lustreNode.inputs) {
                 AgreeVar var = (AgreeVar) lustreVar;
                 if (var.reference instanceof AssumeStatement || var.reference instanceof LemmaStatement) {
-                    assumeLemmaTrue =
-                            new BinaryExpr(assumeLemmaTrue, BinaryOp.AND, new IdExpr(prefix + var.id));
+                    assumeLemmaIds.add(new IdExpr(prefix + var.id));
                 }
             }
-            assumeLemmaTrue =
-                    new BinaryExpr(new UnaryExpr(UnaryOp.NOT, tickedId), BinaryOp.IMPLIES, assumeLemmaTrue);
+            Expr assumeLemmaTrue = new BinaryExpr(new UnaryExpr(UnaryOp.NOT, tickedId), BinaryOp.IMPLIES,
+                    LustreExprUtil.and(assumeLemmaIds));
             assertions.add(new AgreeStatement("", assumeLemmaTrue, null));
 
         }
@@ -642,12 +642,11 @@ public class LustreAstBuilder {
     protected static void addClockHolds(AgreeNode agreeNode, List<AgreeStatement> assertions,
             AgreeNode subAgreeNode, Expr clockExpr, String prefix, Node lustreNode) {
         if (agreeNode.timing != TimingModel.SYNC) {
-            Expr hold = new BoolExpr(true);
+            List<Expr> holds = new ArrayList<>();
             for (AgreeVar outVar : subAgreeNode.outputs) {
                 Expr varId = new IdExpr(prefix + outVar.id);
                 Expr pre = new UnaryExpr(UnaryOp.PRE, varId);
-                Expr eqPre = new BinaryExpr(varId, BinaryOp.EQUAL, pre);
-                hold = new BinaryExpr(hold, BinaryOp.AND, eqPre);
+                holds.add(new BinaryExpr(varId, BinaryOp.EQUAL, pre));
             }
 
             for (VarDecl lustreVar : lustreNode.inputs) {
@@ -655,10 +654,10 @@ public class LustreAstBuilder {
                 if (var.reference instanceof AssumeStatement || var.reference instanceof LemmaStatement) {
                     Expr varId = new IdExpr(prefix + var.id);
                     Expr pre = new UnaryExpr(UnaryOp.PRE, varId);
-                    Expr eqPre = new BinaryExpr(varId, BinaryOp.EQUAL, pre);
-                    hold = new BinaryExpr(hold, BinaryOp.AND, eqPre);
+                    holds.add(new BinaryExpr(varId, BinaryOp.EQUAL, pre));
                 }
             }
+            Expr hold = LustreExprUtil.and(holds);
 
             Expr notClock = new UnaryExpr(UnaryOp.NOT, clockExpr);
             Expr notClockHold = new BinaryExpr(notClock, BinaryOp.IMPLIES, hold);
@@ -667,16 +666,16 @@ public class LustreAstBuilder {
         }
     }
 
-    protected static void addCondactCall(AgreeNode agreeNode, String nodePrefix, List<AgreeVar> inputs,
-            List<AgreeStatement> assertions, AgreeNode subAgreeNode, String prefix, Expr clockExpr,
-            Node lustreNode) {
+    protected static void addCondactCall(LustreBuildContext context, AgreeNode agreeNode, String nodePrefix,
+            List<AgreeVar> inputs, List<AgreeStatement> assertions, AgreeNode subAgreeNode, String prefix,
+            Expr clockExpr, Node lustreNode) {
         List<Expr> inputIds = new ArrayList<>();
         for (VarDecl var : lustreNode.inputs) {
             inputIds.add(new IdExpr(prefix + var.id));
         }
 
         if (agreeNode.timing == TimingModel.LATCHED) {
-            addLatchedConstraints(nodePrefix, inputs, assertions, subAgreeNode, prefix, inputIds);
+            addLatchedConstraints(context, nodePrefix, inputs, assertions, subAgreeNode, prefix, inputIds);
         }
 
         Expr condactExpr = new CondactExpr(clockExpr, new NodeCallExpr(lustreNode.id, inputIds),
@@ -733,16 +732,17 @@ public class LustreAstBuilder {
         }
     }
 
-    protected static Node addSubNodeLustre(AgreeNode agreeNode, String nodePrefix, AgreeNode flatNode,
-            boolean monolithic) {
+    protected static Node addSubNodeLustre(LustreBuildContext context, AgreeNode agreeNode, String nodePrefix,
+            AgreeNode flatNode, boolean monolithic) {
 
         Node lustreNode = getLustreNode(flatNode, nodePrefix, monolithic);
-        addToNodes(lustreNode);
+        context.addNode(lustreNode);
         return lustreNode;
     }
 
-    protected static void addLatchedConstraints(String nodePrefix, List<AgreeVar> inputs,
-            List<AgreeStatement> assertions, AgreeNode subAgreeNode, String prefix, List<Expr> inputIds) {
+    protected static void addLatchedConstraints(LustreBuildContext context, String nodePrefix,
+            List<AgreeVar> inputs, List<AgreeStatement> assertions, AgreeNode subAgreeNode, String prefix,
+            List<Expr> inputIds) {
         String latchNodeString = nodePrefix + subAgreeNode.id + "__LATCHED_INPUTS";
 
         List<Expr> nonLatchedInputs = new ArrayList<>();
@@ -762,7 +762,7 @@ public class LustreAstBuilder {
         Node latchNode =
                 getInputLatchingNode(new IdExpr(subAgreeNode.clockVar.id), latchedVars, latchNodeString);
 
-        addToNodes(latchNode);
+        context.addNode(latchNode);
         NodeCallExpr latchedNodeCall = new NodeCallExpr(latchNodeString, nonLatchedInputs);
         Expr latchedInputEq;
         if (latchedInputs.size() != 1) {
@@ -813,14 +813,4 @@ public class LustreAstBuilder {
 
     }
 
-    protected static void addToNodes(Node node) {
-        for (Node inList : nodes) {
-            if (node.id.equals(inList.id)) {
-                throw new AgreeException(
-                        "AGREE Lustre AST Builder attempted to add multiple nodes of name '" + node.id + "'");
-            }
-        }
-        nodes.add(node);
-    }
-
 }
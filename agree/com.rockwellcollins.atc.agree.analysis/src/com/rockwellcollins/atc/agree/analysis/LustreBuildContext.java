@@ -0,0 +1,40 @@
+package com.rockwellcollins.atc.agree.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import jkind.lustre.Node;
+
+import com.rockwellcollins.atc.agree.analysis.ast.AgreeStatement;
+import com.rockwellcollins.atc.agree.analysis.ast.NodeRegistry;
+import com.rockwellcollins.atc.agree.analysis.lustre.visitors.ExprInterner;
+
+/**
+ * The lustre nodes generated while building one lustre program, and the
+ * expressions shared between them. Every program is built with its own
+ * context, so programs can be built on several threads at the same time.
+ */
+public class LustreBuildContext {
+    public final NodeRegistry nodes = new NodeRegistry();
+    public final ExprInterner interner = new ExprInterner();
+
+    public void addNode(Node node) {
+        if (!nodes.add(node)) {
+            throw new AgreeException(
+                    "AGREE Lustre AST Builder attempted to add multiple nodes of name '" + node.id + "'");
+        }
+    }
+
+    /**
+     * Returns the statements with their expressions interned, so that the
+     * clock and hold constraints repeated for every subcomponent are shared.
+     */
+    public List<AgreeStatement> intern(List<AgreeStatement> statements) {
+        List<AgreeStatement> result = new ArrayList<>(statements.size());
+        for (AgreeStatement statement : statements) {
+            result.add(new AgreeStatement(statement.string, interner.intern(statement.expr),
+                    statement.reference));
+        }
+        return result;
+    }
+}
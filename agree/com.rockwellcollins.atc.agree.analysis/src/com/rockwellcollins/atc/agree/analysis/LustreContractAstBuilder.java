@@ -37,19 +37,20 @@ import com.rockwellcollins.atc.agree.analysis.ast.AgreeProgram;
 import com.rockwellcollins.atc.agree.analysis.ast.AgreeStatement;
 import com.rockwellcollins.atc.agree.analysis.ast.AgreeVar;
 import com.rockwellcollins.atc.agree.analysis.ast.AgreeNode.TimingModel;
+import com.rockwellcollins.atc.agree.analysis.lustre.LustreExprUtil;
 
 public class LustreContractAstBuilder extends LustreAstBuilder {
 
     public static Program getContractLustreProgram(AgreeProgram agreeProgram) {
 
-        nodes = new ArrayList<>();
+        LustreBuildContext context = new LustreBuildContext();
         List<TypeDef> types = new ArrayList<>();
         for (Type type : agreeProgram.globalTypes) {
             RecordType recType = (RecordType) type;
             types.add(new TypeDef(recType.id, type));
         }
 
-        AgreeNode flatNode = flattenAgreeNodeKindContract(agreeProgram.topNode, "_TOP__");
+        AgreeNode flatNode = flattenAgreeNodeKindContract(context, agreeProgram.topNode, "_TOP__");
         List<Expr> assertions = new ArrayList<>();
         List<VarDecl> locals = new ArrayList<>();
         List<VarDecl> inputs = new ArrayList<>();
@@ -93,6 +94,7 @@ public class LustreContractAstBuilder extends LustreAstBuilder {
 
         Node main = new Node("_TOP", inputs, outputs, locals, equations, properties, assertions, null,
                 Optional.of(Collections.singletonList(contract)));
+        List<Node> nodes = context.nodes.getNodes();
         nodes.addAll(agreeProgram.globalLustreNodes);
         nodes.add(main);
         Program program = new Program(types, null, nodes, main.id);
@@ -101,32 +103,29 @@ public class LustreContractAstBuilder extends LustreAstBuilder {
 
     }
 
-    protected static AgreeNode flattenAgreeNodeKindContract(AgreeNode agreeNode, String nodePrefix) {
+    protected static AgreeNode flattenAgreeNodeKindContract(LustreBuildContext context, AgreeNode agreeNode,
+            String nodePrefix) {
 
         List<AgreeVar> inputs = new ArrayList<>();
         List<AgreeVar> outputs = new ArrayList<>();
         List<AgreeVar> locals = new ArrayList<>();
         List<AgreeStatement> assertions = new ArrayList<>();
 
-        Expr someoneTicks = null;
+        List<Expr> clockExprs = new ArrayList<>();
         for (AgreeNode subAgreeNode : agreeNode.subNodes) {
             String prefix = subAgreeNode.id + AgreeASTBuilder.dotChar;
             Expr clockExpr = getClockExpr(agreeNode, subAgreeNode);
 
-            if (someoneTicks == null) {
-                someoneTicks = clockExpr;
-            } else {
-                someoneTicks = new BinaryExpr(someoneTicks, BinaryOp.OR, clockExpr);
-            }
+            clockExprs.add(clockExpr);
 
-            AgreeNode flatNode = flattenAgreeNodeKindContract(subAgreeNode,
+            AgreeNode flatNode = flattenAgreeNodeKindContract(context, subAgreeNode,
                     nodePrefix + subAgreeNode.id + AgreeASTBuilder.dotChar);
 
-            Node lustreNode = addSubNodeLustre(agreeNode, nodePrefix, flatNode);
+            Node lustreNode = addSubNodeLustre(context, agreeNode, nodePrefix, flatNode);
 
             addInputsAndOutputs(inputs, outputs, flatNode, lustreNode, prefix);
 
-            addCondactCall(agreeNode, nodePrefix, inputs, assertions, flatNode, prefix, clockExpr,
+            addCondactCall(context, agreeNode, nodePrefix, inputs, assertions, flatNode, prefix, clockExpr,
                     lustreNode);
 
             // addClockHolds(agreeNode, assertions, flatNode, clockExpr, prefix,
@@ -137,10 +136,10 @@ public class LustreContractAstBuilder extends LustreAstBuilder {
         }
 
         if (agreeNode.timing == TimingModel.ASYNC) {
-            if (someoneTicks == null) {
+            if (clockExprs.isEmpty()) {
                 throw new AgreeException("Somehow we generated a clock constraint without any clocks");
             }
-            assertions.add(new AgreeStatement("someone ticks", someoneTicks, null));
+            assertions.add(new AgreeStatement("someone ticks", LustreExprUtil.or(clockExprs), null));
         }
 
         addConnectionConstraints(agreeNode, assertions);
@@ -152,16 +151,17 @@ public class LustreContractAstBuilder extends LustreAstBuilder {
         outputs.addAll(agreeNode.outputs);
         locals.addAll(agreeNode.locals);
 
-        return new AgreeNode(agreeNode.id, inputs, outputs, locals, null, agreeNode.subNodes, assertions,
-                agreeNode.assumptions, agreeNode.guarantees, agreeNode.lemmas, new BoolExpr(true),
-                agreeNode.initialConstraint, agreeNode.clockVar, agreeNode.reference, null,
+        return new AgreeNode(agreeNode.id, inputs, outputs, locals, null, agreeNode.subNodes,
+                context.intern(assertions), agreeNode.assumptions, agreeNode.guarantees, agreeNode.lemmas,
+                new BoolExpr(true), agreeNode.initialConstraint, agreeNode.clockVar, agreeNode.reference, null,
                 agreeNode.compInst);
     }
 
-    protected static Node addSubNodeLustre(AgreeNode agreeNode, String nodePrefix, AgreeNode flatNode) {
+    protected static Node addSubNodeLustre(LustreBuildContext context, AgreeNode agreeNode, String nodePrefix,
+            AgreeNode flatNode) {
 
         Node lustreNode = getLustreNode(flatNode, nodePrefix);
-        addToNodes(lustreNode);
+        context.addNode(lustreNode);
         return lustreNode;
     }
 
@@ -231,9 +231,9 @@ public class LustreContractAstBuilder extends LustreAstBuilder {
 
     }
 
-    protected static void addCondactCall(AgreeNode agreeNode, String nodePrefix, List<AgreeVar> inputs,
-            List<AgreeStatement> assertions, AgreeNode subAgreeNode, String prefix, Expr clockExpr,
-            Node lustreNode) {
+    protected static void addCondactCall(LustreBuildContext context, AgreeNode agreeNode, String nodePrefix,
+            List<AgreeVar> inputs, List<AgreeStatement> assertions, AgreeNode subAgreeNode, String prefix,
+            Expr clockExpr, Node lustreNode) {
         List<Expr> inputIds = new ArrayList<>();
         List<Expr> initOutputsVals = new ArrayList<>();
         List<IdExpr> nodeOutputIds = new ArrayList<>();
@@ -255,7 +255,7 @@ public class LustreContractAstBuilder extends LustreAstBuilder {
         }
 
         if (agreeNode.timing == TimingModel.LATCHED) {
-            addLatchedConstraints(nodePrefix, inputs, assertions, subAgreeNode, prefix, inputIds);
+            addLatchedConstraints(context, nodePrefix, inputs, assertions, subAgreeNode, prefix, inputIds);
         }
 
         Expr condactExpr =
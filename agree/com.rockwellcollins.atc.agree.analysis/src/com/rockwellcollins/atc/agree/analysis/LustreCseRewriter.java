@@ -0,0 +1,415 @@
+package com.rockwellcollins.atc.agree.analysis;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import jkind.lustre.ArrayAccessExpr;
+import jkind.lustre.ArrayExpr;
+import jkind.lustre.ArrayUpdateExpr;
+import jkind.lustre.BinaryExpr;
+import jkind.lustre.BoolExpr;
+import jkind.lustre.CastExpr;
+import jkind.lustre.CondactExpr;
+import jkind.lustre.Equation;
+import jkind.lustre.Expr;
+import jkind.lustre.IdExpr;
+import jkind.lustre.IfThenElseExpr;
+import jkind.lustre.InductDataExpr;
+import jkind.lustre.IntExpr;
+import jkind.lustre.NamedType;
+import jkind.lustre.Node;
+import jkind.lustre.NodeCallExpr;
+import jkind.lustre.Program;
+import jkind.lustre.QuantExpr;
+import jkind.lustre.RealExpr;
+import jkind.lustre.RecordAccessExpr;
+import jkind.lustre.RecordExpr;
+import jkind.lustre.RecordUpdateExpr;
+import jkind.lustre.TupleExpr;
+import jkind.lustre.Type;
+import jkind.lustre.UnaryExpr;
+import jkind.lustre.VarDecl;
+import jkind.lustre.visitors.ExprVisitor;
+import jkind.lustre.visitors.TypeReconstructor;
+import jkind.util.Util;
+
+import com.rockwellcollins.atc.agree.analysis.lustre.visitors.ExprInterner;
+
+/**
+ * Eliminates common subexpressions from the nodes of a lustre program. Every
+ * non-trivial subexpression of a boolean, integer or real type that occurs
+ * more than once in a node is defined once by an equation of a new local and
+ * replaced by that local everywhere else.
+ * <p>
+ * The new locals are named {@value #CSE_PREFIX} followed by a number. They
+ * have no AGREE reference, so {@link AgreeRenaming} hides them from
+ * counterexamples, and the existing variables keep their names.
+ */
+public class LustreCseRewriter {
+    public static final String CSE_PREFIX = "_cse";
+
+    public static Program eliminate(Program program) {
+        TypeReconstructor types = new TypeReconstructor(program);
+        List<Node> nodes = new ArrayList<>();
+        for (Node node : program.nodes) {
+            nodes.add(eliminate(node, types));
+        }
+        return new Program(program.location, program.types, program.constants, nodes, program.main,
+                program.recFuns);
+    }
+
+    private static Node eliminate(Node node, TypeReconstructor types) {
+        ExprInterner interner = new ExprInterner();
+        List<Expr> rhss = new ArrayList<>();
+        for (Equation eq : node.equations) {
+            rhss.add(interner.intern(eq.expr));
+        }
+        List<Expr> assertions = interner.intern(node.assertions);
+
+        Map<Expr, Integer> counts = new IdentityHashMap<>();
+        List<Expr> order = new ArrayList<>();
+        for (Expr expr : rhss) {
+            count(expr, counts, order);
+        }
+        for (Expr expr : assertions) {
+            count(expr, counts, order);
+        }
+
+        Set<String> usedIds = new HashSet<>();
+        for (VarDecl var : Util.getVarDecls(node)) {
+            usedIds.add(var.id);
+        }
+
+        types.setNodeContext(node);
+        Map<Expr, IdExpr> names = new IdentityHashMap<>();
+        Map<IdExpr, Expr> definitions = new LinkedHashMap<>();
+        List<VarDecl> locals = new ArrayList<>(node.locals);
+        int index = 0;
+        for (Expr expr : order) {
+            if (counts.get(expr) < 2 || isTrivial(expr)) {
+                continue;
+            }
+            Type type = getType(expr, types);
+            if (!(type instanceof NamedType) || !((NamedType) type).isBuiltin()) {
+                continue;
+            }
+            String name;
+            do {
+                name = CSE_PREFIX + index++;
+            } while (usedIds.contains(name));
+            IdExpr id = new IdExpr(name);
+            names.put(expr, id);
+            definitions.put(id, expr);
+            locals.add(new VarDecl(name, type));
+        }
+
+        if (names.isEmpty()) {
+            return node;
+        }
+
+        Hoister hoister = new Hoister(names);
+        List<Equation> equations = new ArrayList<>();
+        for (int i = 0; i < node.equations.size(); i++) {
+            equations.add(new Equation(node.equations.get(i).location, node.equations.get(i).lhs,
+                    hoister.rewrite(rhss.get(i))));
+        }
+        for (Entry<IdExpr, Expr> entry : definitions.entrySet()) {
+            equations.add(new Equation(entry.getKey(), hoister.define(entry.getValue())));
+        }
+        List<Expr> newAssertions = new ArrayList<>();
+        for (Expr expr : assertions) {
+            newAssertions.add(hoister.rewrite(expr));
+        }
+
+        return new Node(node.location, node.id, node.inputs, node.outputs, locals, equations, node.properties,
+                newAssertions, node.realizabilityInputs, node.contracts);
+    }
+
+    /**
+     * Counts the references to each interned expression. The children of an
+     * expression are only counted the first time the expression is reached,
+     * so an expression referenced twice through the same parent counts once.
+     * Expressions are added to the order after their children, and are walked
+     * with explicit stacks so deep expressions do not overflow the stack.
+     */
+    private static void count(Expr root, Map<Expr, Integer> counts, List<Expr> order) {
+        Deque<Expr> todo = new ArrayDeque<>();
+        Deque<Boolean> expanded = new ArrayDeque<>();
+        todo.push(root);
+        expanded.push(false);
+        while (!todo.isEmpty()) {
+            Expr expr = todo.pop();
+            if (expanded.pop()) {
+                counts.put(expr, 1);
+                order.add(expr);
+                continue;
+            }
+            Integer count = counts.get(expr);
+            if (count != null) {
+                counts.put(expr, count + 1);
+                continue;
+            }
+            todo.push(expr);
+            expanded.push(true);
+            List<Expr> children = getChildren(expr);
+            for (int i = children.size() - 1; i >= 0; i--) {
+                todo.push(children.get(i));
+                expanded.push(false);
+            }
+        }
+    }
+
+    private static boolean isTrivial(Expr expr) {
+        if (expr instanceof IdExpr || expr instanceof BoolExpr || expr instanceof IntExpr
+                || expr instanceof RealExpr) {
+            return true;
+        }
+        if (expr instanceof UnaryExpr) {
+            return isTrivial(((UnaryExpr) expr).expr);
+        }
+        // condacts and tuples are not values that can be held by a local
+        return expr instanceof CondactExpr || expr instanceof TupleExpr;
+    }
+
+    private static Type getType(Expr expr, TypeReconstructor types) {
+        try {
+            return expr.accept(types);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static List<Expr> getChildren(Expr expr) {
+        List<Expr> children = new ArrayList<>();
+        if (expr instanceof BinaryExpr) {
+            children.add(((BinaryExpr) expr).left);
+            children.add(((BinaryExpr) expr).right);
+        } else if (expr instanceof UnaryExpr) {
+            children.add(((UnaryExpr) expr).expr);
+        } else if (expr instanceof IfThenElseExpr) {
+            IfThenElseExpr ite = (IfThenElseExpr) expr;
+            children.add(ite.cond);
+            children.add(ite.thenExpr);
+            children.add(ite.elseExpr);
+        } else if (expr instanceof NodeCallExpr) {
+            children.addAll(((NodeCallExpr) expr).args);
+        } else if (expr instanceof CondactExpr) {
+            CondactExpr condact = (CondactExpr) expr;
+            children.add(condact.clock);
+            children.addAll(condact.call.args);
+            children.addAll(condact.args);
+        } else if (expr instanceof CastExpr) {
+            children.add(((CastExpr) expr).expr);
+        } else if (expr instanceof RecordAccessExpr) {
+            children.add(((RecordAccessExpr) expr).record);
+        } else if (expr instanceof RecordExpr) {
+            children.addAll(((RecordExpr) expr).fields.values());
+        } else if (expr instanceof RecordUpdateExpr) {
+            children.add(((RecordUpdateExpr) expr).record);
+            children.add(((RecordUpdateExpr) expr).value);
+        } else if (expr instanceof TupleExpr) {
+            children.addAll(((TupleExpr) expr).elements);
+        }
+        // quantifiers bind variables and arrays are not generated, so their
+        // subexpressions are left alone
+        return children;
+    }
+
+    /**
+     * Replaces every expression that has been given a local by that local.
+     * Rewritten expressions are memoized, so shared subexpressions are only
+     * rewritten once. Expressions are rebuilt bottom up with explicit stacks
+     * from the rewritten results of their children.
+     */
+    private static class Hoister implements ExprVisitor<Expr> {
+        private final Map<Expr, IdExpr> names;
+        private final Map<Expr, Expr> rewritten = new IdentityHashMap<>();
+        private final Deque<Expr> results = new ArrayDeque<>();
+
+        public Hoister(Map<Expr, IdExpr> names) {
+            this.names = names;
+        }
+
+        public Expr rewrite(Expr expr) {
+            IdExpr id = names.get(expr);
+            if (id != null) {
+                return id;
+            }
+            return define(expr);
+        }
+
+        /**
+         * Rewrites the subexpressions of an expression but not the
+         * expression itself.
+         */
+        public Expr define(Expr expr) {
+            Expr result = rewritten.get(expr);
+            if (result != null) {
+                return result;
+            }
+
+            Deque<Expr> todo = new ArrayDeque<>();
+            Deque<Boolean> expanded = new ArrayDeque<>();
+            expand(expr, todo, expanded);
+            while (!todo.isEmpty()) {
+                Expr e = todo.pop();
+                if (expanded.pop()) {
+                    result = e.accept(this);
+                    rewritten.put(e, result);
+                    results.push(result);
+                    continue;
+                }
+                result = names.get(e);
+                if (result == null) {
+                    result = rewritten.get(e);
+                }
+                if (result != null) {
+                    results.push(result);
+                } else {
+                    expand(e, todo, expanded);
+                }
+            }
+            return results.pop();
+        }
+
+        /**
+         * Schedules an expression to be rebuilt after its children, leaving
+         * their results on the stack in order.
+         */
+        private static void expand(Expr e, Deque<Expr> todo, Deque<Boolean> expanded) {
+            todo.push(e);
+            expanded.push(true);
+            List<Expr> children = getChildren(e);
+            for (int i = children.size() - 1; i >= 0; i--) {
+                todo.push(children.get(i));
+                expanded.push(false);
+            }
+        }
+
+        private List<Expr> popResults(int count) {
+            Expr[] args = new Expr[count];
+            for (int i = count - 1; i >= 0; i--) {
+                args[i] = results.pop();
+            }
+            return new ArrayList<>(Arrays.asList(args));
+        }
+
+        @Override
+        public Expr visit(ArrayAccessExpr e) {
+            return e;
+        }
+
+        @Override
+        public Expr visit(ArrayExpr e) {
+            return e;
+        }
+
+        @Override
+        public Expr visit(ArrayUpdateExpr e) {
+            return e;
+        }
+
+        @Override
+        public Expr visit(BinaryExpr e) {
+            List<Expr> args = popResults(2);
+            return new BinaryExpr(e.location, args.get(0), e.op, args.get(1));
+        }
+
+        @Override
+        public Expr visit(BoolExpr e) {
+            return e;
+        }
+
+        @Override
+        public Expr visit(CastExpr e) {
+            return new CastExpr(e.location, e.type, results.pop());
+        }
+
+        @Override
+        public Expr visit(CondactExpr e) {
+            int numCallArgs = e.call.args.size();
+            List<Expr> args = popResults(1 + numCallArgs + e.args.size());
+            NodeCallExpr call = new NodeCallExpr(e.call.location, e.call.node,
+                    new ArrayList<>(args.subList(1, 1 + numCallArgs)));
+            return new CondactExpr(e.location, args.get(0), call,
+                    new ArrayList<>(args.subList(1 + numCallArgs, args.size())));
+        }
+
+        @Override
+        public Expr visit(IdExpr e) {
+            return e;
+        }
+
+        @Override
+        public Expr visit(IfThenElseExpr e) {
+            List<Expr> args = popResults(3);
+            return new IfThenElseExpr(e.location, args.get(0), args.get(1), args.get(2));
+        }
+
+        @Override
+        public Expr visit(InductDataExpr e) {
+            return e;
+        }
+
+        @Override
+        public Expr visit(IntExpr e) {
+            return e;
+        }
+
+        @Override
+        public Expr visit(NodeCallExpr e) {
+            return new NodeCallExpr(e.location, e.node, popResults(e.args.size()));
+        }
+
+        @Override
+        public Expr visit(QuantExpr e) {
+            return e;
+        }
+
+        @Override
+        public Expr visit(RealExpr e) {
+            return e;
+        }
+
+        @Override
+        public Expr visit(RecordAccessExpr e) {
+            return new RecordAccessExpr(e.location, results.pop(), e.field);
+        }
+
+        @Override
+        public Expr visit(RecordExpr e) {
+            List<Expr> values = popResults(e.fields.size());
+            Map<String, Expr> fields = new LinkedHashMap<>();
+            int i = 0;
+            for (String field : e.fields.keySet()) {
+                fields.put(field, values.get(i++));
+            }
+            return new RecordExpr(e.location, e.id, fields);
+        }
+
+        @Override
+        public Expr visit(RecordUpdateExpr e) {
+            List<Expr> args = popResults(2);
+            return new RecordUpdateExpr(e.location, args.get(0), e.field, args.get(1));
+        }
+
+        @Override
+        public Expr visit(TupleExpr e) {
+            return new TupleExpr(e.location, popResults(e.elements.size()));
+        }
+
+        @Override
+        public Expr visit(UnaryExpr e) {
+            return new UnaryExpr(e.location, e.op, results.pop());
+        }
+    }
+}
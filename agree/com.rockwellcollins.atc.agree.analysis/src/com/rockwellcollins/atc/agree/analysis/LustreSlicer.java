@@ -0,0 +1,267 @@
+package com.rockwellcollins.atc.agree.analysis;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import jkind.lustre.Equation;
+import jkind.lustre.Expr;
+import jkind.lustre.IdExpr;
+import jkind.lustre.Node;
+import jkind.lustre.NodeCallExpr;
+import jkind.lustre.Program;
+import jkind.lustre.VarDecl;
+import jkind.lustre.visitors.ExprIterVisitor;
+
+import com.rockwellcollins.atc.agree.analysis.lustre.visitors.IdGatherer;
+
+/**
+ * Removes the parts of a lustre program that cannot affect a set of
+ * properties of its main node. A variable is in the cone of influence of the
+ * properties if a property refers to it, if the equation of a variable in the
+ * cone refers to it, or if an assertion connected to the cone refers to it.
+ * An assertion is connected to the cone if it refers to a variable in the
+ * cone or to a variable whose equation depends on the cone, since it then
+ * constrains the values of the cone. Equations, locals, inputs and
+ * assertions of the main node outside of the cone are dropped, as are the
+ * nodes no longer called. Assertions without variables are always kept.
+ * <p>
+ * The variables that are kept are the original declarations, so the layout
+ * and renaming of counterexamples work on a sliced program unchanged.
+ */
+public class LustreSlicer {
+
+    public static Program slice(Program program) {
+        return slice(program, program.getMainNode().properties);
+    }
+
+    public static Program slice(Program program, Collection<String> properties) {
+        Node main = program.getMainNode();
+        Set<String> cone = getConeOfInfluence(main, properties);
+
+        List<Equation> equations = new ArrayList<>();
+        for (Equation eq : main.equations) {
+            if (anyInCone(eq.lhs, cone)) {
+                equations.add(eq);
+            }
+        }
+
+        Set<String> declared = getDeclared(main);
+        List<Expr> assertions = new ArrayList<>();
+        for (Expr assertion : main.assertions) {
+            Set<String> vars = getVariables(assertion, declared);
+            if (vars.isEmpty() || anyIdInCone(vars, cone)) {
+                assertions.add(assertion);
+            }
+        }
+
+        List<String> keptProperties = new ArrayList<>();
+        for (String prop : main.properties) {
+            if (properties.contains(prop)) {
+                keptProperties.add(prop);
+            }
+        }
+
+        Node slicedMain = new Node(main.location, main.id, filter(main.inputs, cone),
+                filter(main.outputs, cone), filter(main.locals, cone), equations, keptProperties, assertions,
+                main.realizabilityInputs, main.contracts);
+
+        List<Node> nodes = new ArrayList<>();
+        Set<String> called = getCalledNodes(program, slicedMain);
+        for (Node node : program.nodes) {
+            if (node.id.equals(main.id)) {
+                nodes.add(slicedMain);
+            } else if (called.contains(node.id)) {
+                nodes.add(node);
+            }
+        }
+
+        return new Program(program.location, program.types, program.constants, nodes, main.id,
+                program.recFuns);
+    }
+
+    /**
+     * Returns the variables of a node that can affect the given properties.
+     * The cone is grown to a fixpoint: every assertion that refers to a
+     * variable in the cone, or to a variable computed from the cone, adds its
+     * variables and their dependencies to the cone.
+     */
+    public static Set<String> getConeOfInfluence(Node node, Collection<String> properties) {
+        Map<String, Equation> definitions = new HashMap<>();
+        Map<String, List<String>> dependents = new HashMap<>();
+        for (Equation eq : node.equations) {
+            for (IdExpr id : eq.lhs) {
+                definitions.put(id.id, eq);
+            }
+            for (String used : getIds(eq.expr)) {
+                for (IdExpr id : eq.lhs) {
+                    getList(dependents, used).add(id.id);
+                }
+            }
+        }
+
+        Set<String> declared = getDeclared(node);
+        Map<String, List<Set<String>>> assertionsByVar = new HashMap<>();
+        for (Expr assertion : node.assertions) {
+            Set<String> vars = getVariables(assertion, declared);
+            for (String var : vars) {
+                getList(assertionsByVar, var).add(vars);
+            }
+        }
+
+        // the cone is closed under the dependencies of its variables, the
+        // reached variables are the variables that depend on the cone
+        Set<String> cone = new HashSet<>();
+        Set<String> reached = new HashSet<>();
+        Set<Equation> visitedEquations = new HashSet<>();
+        Deque<String> coneWorklist = new ArrayDeque<>(properties);
+        Deque<String> reachedWorklist = new ArrayDeque<>();
+        while (!coneWorklist.isEmpty() || !reachedWorklist.isEmpty()) {
+            if (!coneWorklist.isEmpty()) {
+                String var = coneWorklist.pop();
+                if (!cone.add(var)) {
+                    continue;
+                }
+                reachedWorklist.push(var);
+
+                Equation eq = definitions.get(var);
+                if (eq != null && visitedEquations.add(eq)) {
+                    for (IdExpr id : eq.lhs) {
+                        coneWorklist.push(id.id);
+                    }
+                    coneWorklist.addAll(getIds(eq.expr));
+                }
+            } else {
+                String var = reachedWorklist.pop();
+                if (!reached.add(var)) {
+                    continue;
+                }
+
+                List<String> users = dependents.get(var);
+                if (users != null) {
+                    reachedWorklist.addAll(users);
+                }
+                List<Set<String>> assertions = assertionsByVar.remove(var);
+                if (assertions != null) {
+                    for (Set<String> vars : assertions) {
+                        coneWorklist.addAll(vars);
+                    }
+                }
+            }
+        }
+        return cone;
+    }
+
+    private static Set<String> getDeclared(Node node) {
+        Set<String> declared = new HashSet<>();
+        for (VarDecl var : node.inputs) {
+            declared.add(var.id);
+        }
+        for (VarDecl var : node.outputs) {
+            declared.add(var.id);
+        }
+        for (VarDecl var : node.locals) {
+            declared.add(var.id);
+        }
+        return declared;
+    }
+
+    /**
+     * Returns the variables an expression refers to, leaving out constants
+     * and other ids that are not declared in the node.
+     */
+    private static Set<String> getVariables(Expr expr, Set<String> declared) {
+        Set<String> vars = new HashSet<>();
+        for (String id : getIds(expr)) {
+            if (declared.contains(id)) {
+                vars.add(id);
+            }
+        }
+        return vars;
+    }
+
+    private static <T> List<T> getList(Map<String, List<T>> map, String key) {
+        List<T> list = map.get(key);
+        if (list == null) {
+            list = new ArrayList<>();
+            map.put(key, list);
+        }
+        return list;
+    }
+
+    private static boolean anyIdInCone(Set<String> ids, Set<String> cone) {
+        for (String id : ids) {
+            if (cone.contains(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean anyInCone(List<IdExpr> ids, Set<String> cone) {
+        for (IdExpr id : ids) {
+            if (cone.contains(id.id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<VarDecl> filter(List<VarDecl> vars, Set<String> cone) {
+        List<VarDecl> result = new ArrayList<>();
+        for (VarDecl var : vars) {
+            if (cone.contains(var.id)) {
+                result.add(var);
+            }
+        }
+        return result;
+    }
+
+    private static Set<String> getCalledNodes(Program program, Node main) {
+        Map<String, Node> nodesById = new HashMap<>();
+        for (Node node : program.nodes) {
+            nodesById.put(node.id, node);
+        }
+
+        Set<String> called = new HashSet<>();
+        Deque<Node> worklist = new ArrayDeque<>();
+        worklist.push(main);
+        while (!worklist.isEmpty()) {
+            Node node = worklist.pop();
+            NodeCallGatherer gatherer = new NodeCallGatherer();
+            for (Equation eq : node.equations) {
+                eq.expr.accept(gatherer);
+            }
+            for (Expr assertion : node.assertions) {
+                assertion.accept(gatherer);
+            }
+            for (String id : gatherer.nodes) {
+                Node callee = nodesById.get(id);
+                if (callee != null && called.add(id)) {
+                    worklist.push(callee);
+                }
+            }
+        }
+        return called;
+    }
+
+    private static Set<String> getIds(Expr expr) {
+        return expr.accept(new IdGatherer());
+    }
+
+    private static class NodeCallGatherer extends ExprIterVisitor {
+        private final Set<String> nodes = new HashSet<>();
+
+        @Override
+        public Void visit(NodeCallExpr e) {
+            nodes.add(e.node);
+            return super.visit(e);
+        }
+    }
+}
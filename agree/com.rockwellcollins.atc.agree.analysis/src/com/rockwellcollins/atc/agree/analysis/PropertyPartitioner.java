@@ -0,0 +1,66 @@
+package com.rockwellcollins.atc.agree.analysis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import jkind.lustre.Node;
+import jkind.lustre.Program;
+
+import com.rockwellcollins.atc.agree.analysis.preferences.PreferenceConstants;
+
+/**
+ * Splits the properties of the main node of a lustre program into groups
+ * that are checked by separate model checker runs, so that a property that
+ * is hard to prove does not hold up the answers for the others.
+ */
+public class PropertyPartitioner {
+
+    public static List<List<String>> partition(Program program, String grouping, int groupSize) {
+        Node main = program.getMainNode();
+        switch (grouping) {
+        case PreferenceConstants.GROUPING_SINGLE:
+            return partitionBySize(main.properties, 1);
+        case PreferenceConstants.GROUPING_SIZE:
+            return partitionBySize(main.properties, groupSize);
+        case PreferenceConstants.GROUPING_SUPPORT:
+            return partitionBySupport(main);
+        default:
+            return Collections.singletonList(main.properties);
+        }
+    }
+
+    public static List<List<String>> partitionBySize(List<String> properties, int groupSize) {
+        groupSize = Math.max(1, groupSize);
+        List<List<String>> groups = new ArrayList<>();
+        for (int i = 0; i < properties.size(); i += groupSize) {
+            groups.add(new ArrayList<>(properties.subList(i, Math.min(i + groupSize, properties.size()))));
+        }
+        return groups;
+    }
+
+    /**
+     * Groups the properties whose cones of influence contain exactly the same
+     * variables, leaving out the property variables themselves. The sliced
+     * program of such a group is no larger than that of any one of its
+     * properties, so checking them together costs nothing extra, while
+     * properties over disjoint parts of the model land in different groups.
+     */
+    public static List<List<String>> partitionBySupport(Node main) {
+        Map<Set<String>, List<String>> groups = new LinkedHashMap<>();
+        for (String property : main.properties) {
+            Set<String> cone = LustreSlicer.getConeOfInfluence(main, Collections.singletonList(property));
+            cone.removeAll(main.properties);
+            List<String> group = groups.get(cone);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.put(cone, group);
+            }
+            group.add(property);
+        }
+        return new ArrayList<>(groups.values());
+    }
+}
@@ -2,9 +2,11 @@ package com.rockwellcollins.atc.agree.analysis.ast;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -13,6 +15,7 @@ import java.util.Set;
 import java.util.Map.Entry;
 
 import org.eclipse.emf.common.util.EList;
+import org.eclipse.emf.common.util.TreeIterator;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.jface.action.Action;
 import org.osate.aadl2.AadlPackage;
@@ -20,6 +23,7 @@ import org.osate.aadl2.AnnexSubclause;
 import org.osate.aadl2.BooleanLiteral;
 import org.osate.aadl2.ComponentClassifier;
 import org.osate.aadl2.ComponentImplementation;
+import org.osate.aadl2.ComponentType;
 import org.osate.aadl2.ConnectedElement;
 import org.osate.aadl2.Connection;
 import org.osate.aadl2.ConnectionEnd;
@@ -125,7 +129,11 @@ import com.rockwellcollins.atc.agree.analysis.extentions.AgreeAutomaterRegistry;
 import com.rockwellcollins.atc.agree.analysis.extentions.CexExtractor;
 import com.rockwellcollins.atc.agree.analysis.extentions.CexExtractorRegistry;
 import com.rockwellcollins.atc.agree.analysis.extentions.ExtensionRegistry;
+import com.rockwellcollins.atc.agree.analysis.lustre.LustreExprUtil;
+import com.rockwellcollins.atc.agree.analysis.lustre.visitors.ExprInterner;
 import com.rockwellcollins.atc.agree.analysis.lustre.visitors.IdGatherer;
+import com.rockwellcollins.atc.agree.analysis.preferences.PreferenceConstants;
+import com.rockwellcollins.atc.agree.analysis.preferences.PreferencesUtil;
 
 public class AgreeASTBuilder extends AgreeSwitch<Expr> {
 
@@ -133,16 +141,65 @@ public class AgreeASTBuilder extends AgreeSwitch<Expr> {
     public static final String eventSuffix = "___EVENT_";
     public static final String dotChar = "__";
 
-    private static List<Node> globalNodes;
-    private static Set<RecordType> globalTypes;
-    private static Map<NamedElement, String> typeMap;
+    private AgreeBuildContext context;
     private ComponentInstance curInst; // used for Get_Property Expressions
+    private final ExprInterner interner = new ExprInterner();
 
+    // translated subtrees, valid as long as the instance model is unchanged
+    private final Map<ComponentInstance, TranslatedNode> translatedNodes = new HashMap<>();
+
+    // whether a component instance or an instance below it has an AGREE annex
+    private final Map<ComponentInstance, Boolean> agreeAnnexBelow = new HashMap<>();
+
+    // the AGREE annexes of each classifier, including inherited ones
+    private final Map<ComponentClassifier, EList<AnnexSubclause>> agreeAnnexes = new HashMap<>();
+
+    // translated contracts that do not depend on the instance they are used in
+    private final Map<AgreeContract, TranslatedContract> translatedContracts = new HashMap<>();
+
+    private static class TranslatedNode {
+        final AgreeNode node;
+        final AgreeBuildContext context;
+
+        TranslatedNode(AgreeNode node, AgreeBuildContext context) {
+            this.node = node;
+            this.context = context;
+        }
+    }
+
+    private static class TranslatedContract {
+        final List<AgreeStatement> assertions;
+        final List<AgreeStatement> lemmas;
+        final List<AgreeStatement> assumptions;
+        final List<AgreeStatement> guarantees;
+        final Expr initialConstraint;
+        final AgreeBuildContext context;
+
+        TranslatedContract(List<AgreeStatement> assertions, List<AgreeStatement> lemmas,
+                List<AgreeStatement> assumptions, List<AgreeStatement> guarantees, Expr initialConstraint,
+                AgreeBuildContext context) {
+            this.assertions = assertions;
+            this.lemmas = lemmas;
+            this.assumptions = assumptions;
+            this.guarantees = guarantees;
+            this.initialConstraint = initialConstraint;
+            this.context = context;
+        }
+    }
+
+    /**
+     * Builds the AGREE program for a component instance. A builder remembers
+     * the subtrees it has translated, so calling this again for a component
+     * of the same instance model (for example for each layer of a
+     * compositional analysis) only translates the components it has not seen
+     * yet. A new builder must be used once the instance model is rebuilt.
+     * A builder keeps its state in instance fields and must not be shared
+     * between threads; use one builder per thread to translate in parallel.
+     */
     public AgreeProgram getAgreeProgram(ComponentInstance compInst) {
 
-        globalNodes = new ArrayList<>();
-        globalTypes = new HashSet<>();
-        typeMap = new HashMap<>();
+        context = new AgreeBuildContext();
+        gatherAgreeAnnexes(compInst);
 
         AgreeNode topNode = getAgreeNode(compInst);
         List<AgreeNode> agreeNodes = gatherNodes(topNode);
@@ -152,8 +209,8 @@ public class AgreeASTBuilder extends AgreeSwitch<Expr> {
         // place rather than the more general types is so we can check set
         // containment
         // easily
-        AgreeProgram program = new AgreeProgram(agreeNodes, new ArrayList<>(globalNodes),
-                new ArrayList<>(globalTypes), topNode);
+        AgreeProgram program = new AgreeProgram(agreeNodes, context.globalNodes.getNodes(),
+                new ArrayList<>(context.globalTypes), topNode);
 
         // go through the extension registries and transform the program
         AgreeAutomaterRegistry aAReg = (AgreeAutomaterRegistry) ExtensionRegistry
@@ -167,6 +224,43 @@ public class AgreeASTBuilder extends AgreeSwitch<Expr> {
         return program;
     }
 
+    /**
+     * Records for a component instance and every instance below it whether
+     * it or an instance below it has an AGREE annex. The subtree is walked
+     * once, children before parents, so filtering the connections of every
+     * component takes time linear in the size of the instance model.
+     */
+    private void gatherAgreeAnnexes(ComponentInstance root) {
+        if (agreeAnnexBelow.containsKey(root)) {
+            return;
+        }
+        List<ComponentInstance> preorder = new ArrayList<>();
+        Deque<ComponentInstance> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            ComponentInstance inst = stack.pop();
+            preorder.add(inst);
+            for (ComponentInstance subInst : inst.getComponentInstances()) {
+                stack.push(subInst);
+            }
+        }
+
+        for (int i = preorder.size() - 1; i >= 0; i--) {
+            ComponentInstance inst = preorder.get(i);
+            Subcomponent subComp = inst.getSubcomponent();
+            boolean found = subComp != null && containsAgreeAnnex(subComp);
+            for (ComponentInstance subInst : inst.getComponentInstances()) {
+                found = found || agreeAnnexBelow.get(subInst);
+            }
+            agreeAnnexBelow.put(inst, found);
+        }
+    }
+
+    private boolean containsTransitiveAgreeAnnex(ComponentInstance compInst) {
+        gatherAgreeAnnexes(compInst);
+        return agreeAnnexBelow.get(compInst);
+    }
+
     private List<AgreeNode> gatherNodes(AgreeNode node) {
         List<AgreeNode> nodes = new ArrayList<>();
 
@@ -178,6 +272,22 @@ public class AgreeASTBuilder extends AgreeSwitch<Expr> {
     }
 
     private AgreeNode getAgreeNode(ComponentInstance compInst) {
+        TranslatedNode translated = translatedNodes.get(compInst);
+        if (translated == null) {
+            AgreeBuildContext parentContext = context;
+            context = new AgreeBuildContext();
+            try {
+                translated = new TranslatedNode(translateAgreeNode(compInst), context);
+            } finally {
+                context = parentContext;
+            }
+            translatedNodes.put(compInst, translated);
+        }
+        context.merge(translated.context);
+        return translated.node;
+    }
+
+    private AgreeNode translateAgreeNode(ComponentInstance compInst) {
         List<AgreeVar> inputs = new ArrayList<>();
         List<AgreeVar> outputs = new ArrayList<>();
         List<AgreeVar> locals = new ArrayList<>();
@@ -215,10 +325,9 @@ public class AgreeASTBuilder extends AgreeSwitch<Expr> {
                 AgreeContract contract = (AgreeContract) annex.getContract();
 
                 curInst = compInst;
-                assertions.addAll(getAssertions(contract.getSpecs()));
-                lemmas.addAll(getLemmas(contract.getSpecs()));
-                addLustreNodes(contract.getSpecs());
-                gatherLustreTypes(contract.getSpecs());
+                TranslatedContract translated = getTranslatedContract(contract);
+                assertions.addAll(translated.assertions);
+                lemmas.addAll(translated.lemmas);
                 // the clock constraints contain other nodes that we add
                 clockConstraint = getClockConstraint(contract.getSpecs(), subNodes);
                 timing = getTimingModel(contract.getSpecs());
@@ -249,23 +358,21 @@ public class AgreeASTBuilder extends AgreeSwitch<Expr> {
         if (annex != null) {
             hasDirectAnnex = true;
             AgreeContract contract = (AgreeContract) annex.getContract();
-            assumptions.addAll(getAssumptions(contract.getSpecs()));
-            guarantees.addAll(getGuarantees(contract.getSpecs()));
+            TranslatedContract translated = getTranslatedContract(contract);
+            assumptions.addAll(translated.assumptions);
+            guarantees.addAll(translated.guarantees);
             // we count eqstatements with expressions as assertions
             // System.out.println(compInst.getName());
-            assertions.addAll(getAssertions(contract.getSpecs()));
+            assertions.addAll(translated.assertions);
             outputs.addAll(getEquationVars(contract.getSpecs(), compInst));
-            initialConstraint = getInitialConstraint(contract.getSpecs());
-
-            addLustreNodes(contract.getSpecs());
-
-            gatherLustreTypes(contract.getSpecs());
+            initialConstraint = translated.initialConstraint;
         }
 
         if (!(foundSubNode || hasDirectAnnex)) {
             return null;
         }
-        gatherOutputsInputsTypes(outputs, inputs, compInst.getFeatureInstances(), typeMap, globalTypes);
+        gatherOutputsInputsTypes(outputs, inputs, compInst.getFeatureInstances(), context.typeMap,
+                context.globalTypes);
 
         // verify that every variable that is reasoned about is
         // in a component containing an annex
@@ -313,6 +420,69 @@ public class AgreeASTBuilder extends AgreeSwitch<Expr> {
                 compInst);
     }
 
+    /**
+     * Translates the statements of a contract and adds the nodes and types
+     * they use to the current context. The statements of contracts without
+     * Get_Property expressions are the same for every instance of the
+     * classifier, so they are translated once and shared by all instances.
+     * The statements are immutable, so sharing them is safe.
+     */
+    private TranslatedContract getTranslatedContract(AgreeContract contract) {
+        TranslatedContract translated = translatedContracts.get(contract);
+        if (translated == null) {
+            AgreeBuildContext parentContext = context;
+            context = new AgreeBuildContext();
+            try {
+                EList<SpecStatement> specs = contract.getSpecs();
+                List<AgreeStatement> assertions = getAssertions(specs);
+                List<AgreeStatement> lemmas = getLemmas(specs);
+                List<AgreeStatement> assumptions = getAssumptions(specs);
+                List<AgreeStatement> guarantees = getGuarantees(specs);
+                Expr initialConstraint = getInitialConstraint(specs);
+                addLustreNodes(specs);
+                gatherLustreTypes(specs);
+                translated = new TranslatedContract(assertions, lemmas, assumptions, guarantees,
+                        initialConstraint, context);
+            } finally {
+                context = parentContext;
+            }
+            if (!containsGetProperty(contract)) {
+                translatedContracts.put(contract, translated);
+            }
+        }
+        context.merge(translated.context);
+        return translated;
+    }
+
+    /**
+     * Returns whether translating the contract may evaluate a Get_Property
+     * expression. Constants are inlined and nodes and functions are
+     * translated with the contract, so the ones it refers to are searched
+     * too, wherever they are defined.
+     */
+    private static boolean containsGetProperty(AgreeContract contract) {
+        Set<EObject> visited = new HashSet<>();
+        Deque<EObject> worklist = new ArrayDeque<>();
+        worklist.push(contract);
+        visited.add(contract);
+        while (!worklist.isEmpty()) {
+            TreeIterator<EObject> it = worklist.pop().eAllContents();
+            while (it.hasNext()) {
+                EObject obj = it.next();
+                if (obj instanceof GetPropertyExpr) {
+                    return true;
+                }
+                for (EObject ref : obj.eCrossReferences()) {
+                    if ((ref instanceof ConstStatement || ref instanceof NodeDefExpr
+                            || ref instanceof FnDefExpr) && visited.add(ref)) {
+                        worklist.push(ref);
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
     private List<AgreeStatement> getLemmas(EList<SpecStatement> specs) {
         List<AgreeStatement> lemmas = new ArrayList<>();
         for (SpecStatement spec : specs) {
@@ -481,13 +651,13 @@ public class AgreeASTBuilder extends AgreeSwitch<Expr> {
             // only make connections to things that have annexs
             if (destContext != null && destContext instanceof Subcomponent) {
                 ComponentInstance subInst = compInst.findSubcomponentInstance((Subcomponent) destContext);
-                if (!AgreeUtils.containsTransitiveAgreeAnnex(subInst)) {
+                if (!containsTransitiveAgreeAnnex(subInst)) {
                     continue;
                 }
             }
             if (sourContext != null && sourContext instanceof Subcomponent) {
                 ComponentInstance subInst = compInst.findSubcomponentInstance((Subcomponent) sourContext);
-                if (!AgreeUtils.containsTransitiveAgreeAnnex(subInst)) {
+                if (!containsTransitiveAgreeAnnex(subInst)) {
                     continue;
                 }
             }
@@ -531,7 +701,8 @@ public class AgreeASTBuilder extends AgreeSwitch<Expr> {
                 dataClass = eventDataPort.getDataFeatureClassifier();
             }
 
-            if (getNamedType(AgreeRecordUtils.getRecordTypeName(dataClass, typeMap, globalTypes)) == null) {
+            if (getNamedType(AgreeRecordUtils.getRecordTypeName(dataClass, context.typeMap,
+                    context.globalTypes)) == null) {
                 // we don't reason about this type
                 continue;
             }
@@ -596,6 +767,8 @@ public class AgreeASTBuilder extends AgreeSwitch<Expr> {
 
         List<Expr> clockIds = new ArrayList<>();
         Expr clockAssertion;
+        boolean againstReference = PreferenceConstants.CALENDAR_ENCODING_REFERENCE
+                .equals(PreferencesUtil.getCalendarEncoding());
         for (AgreeNode subNode : subNodes) {
             clockIds.add(new IdExpr(subNode.clockVar.id));
         }
@@ -605,7 +778,7 @@ public class AgreeASTBuilder extends AgreeSwitch<Expr> {
                     .getDFANode(AgreeRecordUtils.getObjectLocationPrefix(spec) + "__DFA_NODE", val1);
             Node calNode = AgreeCalendarUtils.getCalendarNode(
                     AgreeRecordUtils.getObjectLocationPrefix(spec) + "__CALENDAR_NODE", dfaNode.id,
-                    clockIds.size());
+                    clockIds.size(), againstReference);
 
             addToNodeList(dfaNode);
             addToNodeList(calNode);
@@ -619,18 +792,7 @@ public class AgreeASTBuilder extends AgreeSwitch<Expr> {
             Node calNode = AgreeCalendarUtils.getMNCalendar(nodeName, val1, val2);
             addToNodeList(calNode);
 
-            clockAssertion = new BoolExpr(true);
-            int i, j;
-            for (i = 0; i < clockIds.size(); i++) {
-                Expr clock1 = clockIds.get(i);
-                for (j = i + 1; j < clockIds.size(); j++) {
-                    Expr clock2 = clockIds.get(j);
-                    NodeCallExpr nodeCall = new NodeCallExpr(nodeName, clock1, clock2);
-                    clockAssertion = new BinaryExpr(clockAssertion, BinaryOp.AND, nodeCall);
-                    nodeCall = new NodeCallExpr(nodeName, clock2, clock1);
-                    clockAssertion = new BinaryExpr(clockAssertion, BinaryOp.AND, nodeCall);
-                }
-            }
+            clockAssertion = AgreeCalendarUtils.getMNCalendarConstraint(nodeName, clockIds, againstReference);
         }
         return clockAssertion;
     }
@@ -638,7 +800,7 @@ public class AgreeASTBuilder extends AgreeSwitch<Expr> {
     private Expr getMNSynchConstraint(MNSynchStatement sync) {
 
         Set<String> nodeNames = new HashSet<>();
-        Expr clockAssertion = new BoolExpr(true);
+        List<Expr> calls = new ArrayList<>();
         for (int i = 0; i < sync.getComp1().size(); i++) {
             Subcomponent maxComp = (Subcomponent) sync.getComp1().get(i);
             Subcomponent minComp = (Subcomponent) sync.getComp2().get(i);
@@ -658,13 +820,11 @@ public class AgreeASTBuilder extends AgreeSwitch<Expr> {
                 addToNodeList(calNode);
             }
 
-            NodeCallExpr nodeCall = new NodeCallExpr(nodeName, elem.maxClock, elem.minClock);
-            clockAssertion = new BinaryExpr(clockAssertion, BinaryOp.AND, nodeCall);
-            nodeCall = new NodeCallExpr(nodeName, elem.minClock, elem.maxClock);
-            clockAssertion = new BinaryExpr(clockAssertion, BinaryOp.AND, nodeCall);
+            calls.add(new NodeCallExpr(nodeName, elem.maxClock, elem.minClock));
+            calls.add(new NodeCallExpr(nodeName, elem.minClock, elem.maxClock));
         }
 
-        return clockAssertion;
+        return LustreExprUtil.and(calls);
     }
 
     private List<Type> gatherLustreTypes(EList<SpecStatement> specs) {
@@ -672,7 +832,7 @@ public class AgreeASTBuilder extends AgreeSwitch<Expr> {
         for (SpecStatement spec : specs) {
             if (spec instanceof RecordDefExpr) {
                 // this will record them to the global types
-                AgreeRecordUtils.getRecordTypeName((NamedElement) spec, typeMap, globalTypes);
+                AgreeRecordUtils.getRecordTypeName((NamedElement) spec, context.typeMap, context.globalTypes);
             }
         }
         return types;
@@ -692,8 +852,8 @@ public class AgreeASTBuilder extends AgreeSwitch<Expr> {
         List<VarDecl> agreeVars = new ArrayList<>();
         for (Arg arg : args) {
             // TODO: decide whether or not to make these VarDecls or AgreeVars
-            NamedType type =
-                    getNamedType(AgreeRecordUtils.getRecordTypeName(arg.getType(), typeMap, globalTypes));
+            NamedType type = getNamedType(
+                    AgreeRecordUtils.getRecordTypeName(arg.getType(), context.typeMap, context.globalTypes));
             agreeVars.add(new AgreeVar(arg.getName(), type, arg, compInst));
         }
         return agreeVars;
@@ -804,9 +964,39 @@ public class AgreeASTBuilder extends AgreeSwitch<Expr> {
         return guarantees;
     }
 
+    private EList<AnnexSubclause> getAllAgreeAnnexes(ComponentClassifier comp) {
+        EList<AnnexSubclause> annexes = agreeAnnexes.get(comp);
+        if (annexes == null) {
+            annexes = AnnexUtil.getAllAnnexSubclauses(comp, AgreePackage.eINSTANCE.getAgreeContractSubclause());
+            agreeAnnexes.put(comp, annexes);
+        }
+        return annexes;
+    }
+
+    /**
+     * Returns whether a classifier or a classifier it extends has an AGREE
+     * annex.
+     */
+    public boolean hasAgreeAnnex(ComponentClassifier comp) {
+        for (AnnexSubclause annex : getAllAgreeAnnexes(comp)) {
+            if (annex instanceof AgreeContractSubclause) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean containsAgreeAnnex(Subcomponent subComp) {
+        ComponentImplementation compImpl = subComp.getComponentImplementation();
+        if (compImpl != null && !getAllAgreeAnnexes(compImpl).isEmpty()) {
+            return true;
+        }
+        ComponentType compType = subComp.getComponentType();
+        return compType != null && !getAllAgreeAnnexes(compType).isEmpty();
+    }
+
     private AgreeContractSubclause getAgreeAnnex(ComponentClassifier comp) {
-        for (AnnexSubclause annex : AnnexUtil.getAllAnnexSubclauses(comp,
-                AgreePackage.eINSTANCE.getAgreeContractSubclause())) {
+        for (AnnexSubclause annex : getAllAgreeAnnexes(comp)) {
             if (annex instanceof AgreeContractSubclause) {
                 // in newer versions of osate the annex this returns annexes in
                 // the type
@@ -981,15 +1171,7 @@ public class AgreeASTBuilder extends AgreeSwitch<Expr> {
 
         String fnName = AgreeRecordUtils.getNodeName(namedEl);
 
-        boolean found = false;
-        for (Node node : globalNodes) {
-            if (node.id.equals(fnName)) {
-                found = true;
-                break;
-            }
-        }
-
-        if (!found) {
+        if (!context.containsNode(fnName)) {
             NestedDotID fn = expr.getFn();
             doSwitch(AgreeUtils.getFinalNestId(fn));
         }
@@ -1028,15 +1210,13 @@ public class AgreeASTBuilder extends AgreeSwitch<Expr> {
     @Override
     public Expr caseFnDefExpr(FnDefExpr expr) {
         String nodeName = AgreeRecordUtils.getNodeName(expr);
-        for (Node node : globalNodes) {
-            if (node.id.equals(nodeName)) {
-                return null;
-            }
+        if (context.containsNode(nodeName)) {
+            return null;
         }
         List<VarDecl> inputs = agreeVarsFromArgs(expr.getArgs(), null);
         Expr bodyExpr = doSwitch(expr.getExpr());
-        NamedType outType =
-                getNamedType(AgreeRecordUtils.getRecordTypeName(expr.getType(), typeMap, globalTypes));
+        NamedType outType = getNamedType(
+                AgreeRecordUtils.getRecordTypeName(expr.getType(), context.typeMap, context.globalTypes));
         VarDecl outVar = new VarDecl("_outvar", outType);
         List<VarDecl> outputs = Collections.singletonList(outVar);
         Equation eq = new Equation(new IdExpr("_outvar"), bodyExpr);
@@ -1052,10 +1232,8 @@ public class AgreeASTBuilder extends AgreeSwitch<Expr> {
 
         String nodeName = AgreeRecordUtils.getNodeName(expr);
 
-        for (Node node : globalNodes) {
-            if (node.id.equals(nodeName)) {
-                return null;
-            }
+        if (context.containsNode(nodeName)) {
+            return null;
         }
 
         List<VarDecl> inputs = agreeVarsFromArgs(expr.getArgs(), null);
@@ -1273,14 +1451,17 @@ public class AgreeASTBuilder extends AgreeSwitch<Expr> {
         return res;
     }
 
-    private static void addToNodeList(Node node) {
-        for (Node inList : globalNodes) {
-            if (inList.id.equals(node.id)) {
-                throw new AgreeException(
-                        "AGREE AST generator tried adding multiple nodes of name '" + node.id + "'");
-            }
-        }
-        globalNodes.add(node);
+    /**
+     * Translates an AGREE element. Structurally identical expressions are
+     * shared between all translations of this builder.
+     */
+    @Override
+    public Expr doSwitch(EObject eObject) {
+        return interner.intern(super.doSwitch(eObject));
+    }
+
+    private void addToNodeList(Node node) {
+        context.addNode(node);
     }
 
 }
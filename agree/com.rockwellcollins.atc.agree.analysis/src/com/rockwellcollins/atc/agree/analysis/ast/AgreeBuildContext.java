@@ -0,0 +1,46 @@
+package com.rockwellcollins.atc.agree.analysis.ast;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.osate.aadl2.NamedElement;
+
+import jkind.lustre.Node;
+import jkind.lustre.RecordType;
+
+import com.rockwellcollins.atc.agree.analysis.AgreeException;
+
+/**
+ * The lustre nodes and record types gathered while translating one component
+ * subtree. The context of a subtree can be merged into the context of the
+ * component that contains it, so a translated subtree can be reused without
+ * translating it again.
+ */
+public class AgreeBuildContext {
+    public final NodeRegistry globalNodes = new NodeRegistry();
+    public final Set<RecordType> globalTypes = new LinkedHashSet<>();
+    public final Map<NamedElement, String> typeMap = new HashMap<>();
+
+    public boolean containsNode(String id) {
+        return globalNodes.contains(id);
+    }
+
+    public void addNode(Node node) {
+        if (!globalNodes.add(node)) {
+            throw new AgreeException("AGREE AST generator tried adding multiple nodes of name '" + node.id + "'");
+        }
+    }
+
+    /**
+     * Adds the nodes and types of another context. Nodes are named after the
+     * AGREE element that defines them, so a node that is already present came
+     * from the same definition and is skipped.
+     */
+    public void merge(AgreeBuildContext other) {
+        globalNodes.addAll(other.globalNodes);
+        globalTypes.addAll(other.globalTypes);
+        typeMap.putAll(other.typeMap);
+    }
+}
@@ -0,0 +1,46 @@
+package com.rockwellcollins.atc.agree.analysis.ast;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import jkind.lustre.Node;
+
+/**
+ * Lustre nodes indexed by id. Nodes are kept in the order they were added, so
+ * the generated program does not depend on hashing.
+ */
+public class NodeRegistry {
+    private final Map<String, Node> nodes = new LinkedHashMap<>();
+
+    public boolean contains(String id) {
+        return nodes.containsKey(id);
+    }
+
+    /**
+     * Adds a node unless a node of the same id is already present.
+     *
+     * @return false if the id was already taken
+     */
+    public boolean add(Node node) {
+        if (nodes.containsKey(node.id)) {
+            return false;
+        }
+        nodes.put(node.id, node);
+        return true;
+    }
+
+    /**
+     * Adds the nodes of another registry whose ids are not already present.
+     */
+    public void addAll(NodeRegistry other) {
+        for (Node node : other.nodes.values()) {
+            add(node);
+        }
+    }
+
+    public List<Node> getNodes() {
+        return new ArrayList<>(nodes.values());
+    }
+}
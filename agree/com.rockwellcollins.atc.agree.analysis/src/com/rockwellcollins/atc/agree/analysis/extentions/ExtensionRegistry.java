@@ -33,7 +33,7 @@ public abstract class ExtensionRegistry {
     /** The extensions in this registry */
     protected Map<String, ExtensionProxy> extensions;
 
-    public static ExtensionRegistry getRegistry(String extensionId) {
+    public static synchronized ExtensionRegistry getRegistry(String extensionId) {
         ExtensionRegistry registry = registries.get(extensionId);
 
         if (registry == null) {
@@ -0,0 +1,125 @@
+package com.rockwellcollins.atc.agree.analysis.handlers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+import com.rockwellcollins.atc.agree.analysis.AgreeLogger;
+
+/**
+ * Runs analysis jobs on a bounded pool of worker threads. Jobs are started in
+ * the order they are submitted. Every running job gets its own progress
+ * monitor, which is registered in the shared queue of active monitors while
+ * the job runs so that the terminate handlers can cancel it. Once the global
+ * monitor is cancelled or a job fails, jobs that have not started yet are
+ * cancelled instead of run. The errors of failed jobs are logged and kept,
+ * so the caller can report them once every job is done.
+ */
+public class AnalysisScheduler {
+
+    public interface AnalysisJob {
+        void execute(IProgressMonitor monitor);
+
+        void cancel();
+    }
+
+    private final ExecutorService executor;
+    private final IProgressMonitor globalMonitor;
+    private final Queue<IProgressMonitor> activeMonitors;
+    private final List<Future<?>> futures = new ArrayList<>();
+    private final AtomicBoolean failed = new AtomicBoolean(false);
+    private final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+
+    public AnalysisScheduler(int numThreads, IProgressMonitor globalMonitor,
+            Queue<IProgressMonitor> activeMonitors) {
+        this.executor = Executors.newFixedThreadPool(Math.max(1, numThreads));
+        this.globalMonitor = globalMonitor;
+        this.activeMonitors = activeMonitors;
+    }
+
+    public synchronized void submit(final AnalysisJob job) {
+        futures.add(executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                if (isStopped()) {
+                    job.cancel();
+                    return;
+                }
+                IProgressMonitor subMonitor = new NullProgressMonitor();
+                activeMonitors.add(subMonitor);
+                try {
+                    job.execute(subMonitor);
+                } catch (Throwable t) {
+                    failed.set(true);
+                    reportError(t);
+                    job.cancel();
+                } finally {
+                    activeMonitors.remove(subMonitor);
+                }
+            }
+        }));
+    }
+
+    private void reportError(Throwable t) {
+        errors.add(t);
+        AgreeLogger.logError("Analysis failed: " + t);
+        synchronized (System.out) {
+            System.out.println("******** Analysis Exception ********");
+            t.printStackTrace(System.out);
+        }
+    }
+
+    /**
+     * Returns the errors of the jobs that failed so far.
+     */
+    public List<Throwable> getErrors() {
+        synchronized (errors) {
+            return new ArrayList<>(errors);
+        }
+    }
+
+    /**
+     * Cancels every job that has not started yet. Jobs that are already
+     * running are left to finish.
+     */
+    public void abort() {
+        failed.set(true);
+    }
+
+    public boolean isStopped() {
+        return failed.get() || globalMonitor.isCanceled();
+    }
+
+    /**
+     * Waits for every submitted job to finish and shuts down the worker
+     * threads. No jobs may be submitted after this is called.
+     */
+    public void awaitCompletion() {
+        List<Future<?>> submitted;
+        synchronized (this) {
+            executor.shutdown();
+            submitted = new ArrayList<>(futures);
+        }
+        for (Future<?> future : submitted) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                executor.shutdownNow();
+                return;
+            } catch (ExecutionException e) {
+                failed.set(true);
+                reportError(e.getCause());
+            }
+        }
+    }
+}
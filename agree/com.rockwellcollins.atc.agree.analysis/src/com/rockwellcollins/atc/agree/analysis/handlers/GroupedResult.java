@@ -0,0 +1,101 @@
+package com.rockwellcollins.atc.agree.analysis.handlers;
+
+import java.util.List;
+
+import jkind.api.results.JKindResult;
+import jkind.api.results.PropertyResult;
+
+/**
+ * A result whose properties are checked in groups, each by its own model
+ * checker run. Every group runs into an unrenamed result of its own, and the
+ * answers are forwarded to the shared result as they arrive. The shared
+ * result is started with the first group and finished with the last one.
+ * A group that is cancelled before it runs is never started. The groups run
+ * on different threads, so the shared result is only changed while holding
+ * the lock of the result tree it is shown in.
+ */
+public class GroupedResult {
+    private final JKindResult result;
+    private int remaining;
+    private boolean started = false;
+    private boolean canceled = false;
+    private final StringBuilder text = new StringBuilder();
+    private final Object lock;
+
+    public GroupedResult(JKindResult result, int numGroups, Object lock) {
+        this.result = result;
+        this.remaining = numGroups;
+        this.lock = lock;
+    }
+
+    public JKindResult getResult() {
+        return result;
+    }
+
+    public JKindResult startGroup(List<String> properties) {
+        synchronized (lock) {
+            if (!started) {
+                started = true;
+                result.start();
+            }
+        }
+
+        JKindResult groupResult = new JKindResult(result.getName());
+        groupResult.addPropertyChangeListener(new ResultForwarder(result, lock));
+        for (String property : properties) {
+            groupResult.addProperty(property);
+        }
+        return groupResult;
+    }
+
+    public void finishGroup(JKindResult groupResult, boolean groupCanceled) {
+        synchronized (lock) {
+            if (groupResult.getText() != null && !groupResult.getText().isEmpty()) {
+                text.append(groupResult.getText());
+                result.setText(text.toString());
+            }
+
+            for (PropertyResult groupProperty : groupResult.getPropertyResults()) {
+                finishProperty(groupProperty.getName(), groupCanceled);
+            }
+            finish(groupCanceled);
+        }
+    }
+
+    /**
+     * Cancels the properties of a group that has not been started.
+     */
+    public void cancelGroup(List<String> properties) {
+        synchronized (lock) {
+            for (String property : properties) {
+                finishProperty(property, true);
+            }
+            finish(true);
+        }
+    }
+
+    private void finishProperty(String property, boolean groupCanceled) {
+        PropertyResult pr = result.getPropertyResult(property);
+        if (pr == null) {
+            return;
+        }
+        if (groupCanceled) {
+            pr.cancel();
+        } else {
+            pr.done();
+        }
+    }
+
+    private void finish(boolean groupCanceled) {
+        canceled |= groupCanceled;
+
+        remaining--;
+        if (remaining == 0) {
+            if (canceled) {
+                result.cancel();
+            } else {
+                result.done();
+            }
+        }
+    }
+}
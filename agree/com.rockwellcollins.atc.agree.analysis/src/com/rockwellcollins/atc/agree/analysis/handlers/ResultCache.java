@@ -0,0 +1,375 @@
+package com.rockwellcollins.atc.agree.analysis.handlers;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import jkind.JKindException;
+import jkind.api.ApiUtil;
+import jkind.api.Backend;
+import jkind.api.JKindApi;
+import jkind.api.KindApi;
+import jkind.api.results.JKindResult;
+import jkind.api.results.PropertyResult;
+import jkind.api.results.Status;
+import jkind.api.xml.XmlParseThread;
+import jkind.interval.BoolInterval;
+import jkind.interval.IntEndpoint;
+import jkind.interval.NumericInterval;
+import jkind.lustre.Program;
+import jkind.lustre.values.BooleanValue;
+import jkind.lustre.values.EnumValue;
+import jkind.lustre.values.IntegerValue;
+import jkind.lustre.values.RealValue;
+import jkind.lustre.values.Value;
+import jkind.results.Counterexample;
+import jkind.results.InvalidProperty;
+import jkind.results.Property;
+import jkind.results.Signal;
+import jkind.results.ValidProperty;
+import jkind.util.Util;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+
+import com.rockwellcollins.atc.agree.analysis.Activator;
+
+/**
+ * Stores the answers of JKind runs on disk, keyed by a hash of the generated
+ * Lustre program, the solver options it was checked with and the JKind jar
+ * that checked it. A program that was already checked with the same options
+ * by the same JKind has its stored answers replayed into the result instead
+ * of calling the model checker again.
+ * <p>
+ * Entries are written in the JKind XML format before any renaming is applied,
+ * so replaying them goes through the same renaming as a live run. Only runs
+ * in which every property got a valid or falsifiable answer are stored. The
+ * least recently used entries are deleted once the cache outgrows
+ * {@link #MAX_SIZE} bytes.
+ */
+public class ResultCache {
+    private static final String RESULTS_TAG = "Results";
+    public static final long MAX_SIZE = 64L * 1024 * 1024;
+
+    private static ResultCache defaultCache;
+
+    private final File directory;
+
+    private File jar;
+    private long jarLength;
+    private long jarModified;
+    private String jarDigest;
+
+    public ResultCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the cache kept in the state location of the plug-in.
+     */
+    public static synchronized ResultCache getDefault() {
+        if (defaultCache == null) {
+            File directory = Activator.getDefault().getStateLocation().append("results").toFile();
+            defaultCache = new ResultCache(directory);
+        }
+        return defaultCache;
+    }
+
+    public void execute(KindApi api, String options, Program program, JKindResult result,
+            IProgressMonitor monitor) {
+        if (!(api instanceof JKindApi)) {
+            // other back ends report properties under analysis specific names
+            api.execute(program, result, monitor);
+            return;
+        }
+
+        String jkindDigest = getJarDigest();
+        if (jkindDigest == null) {
+            api.execute(program, result, monitor);
+            return;
+        }
+
+        File file = new File(directory, getKey(jkindDigest, options, program) + ".xml");
+        if (file.isFile() && replay(file, result)) {
+            // the modification time orders the entries for eviction
+            file.setLastModified(System.currentTimeMillis());
+            return;
+        }
+
+        JKindResult raw = new JKindResult(result.getName());
+        raw.addPropertyChangeListener(new ResultForwarder(result));
+        result.start();
+        try {
+            api.execute(program, raw, monitor);
+        } finally {
+            result.setText(raw.getText());
+            if (monitor.isCanceled()) {
+                result.cancel();
+            } else {
+                result.done();
+            }
+        }
+
+        if (!monitor.isCanceled() && store(file, raw.getPropertyResults())) {
+            evict();
+        }
+    }
+
+    /**
+     * Returns the hash of the JKind jar that will run the program, or null if
+     * it cannot be read. The hash is recomputed when the jar changes.
+     */
+    private synchronized String getJarDigest() {
+        try {
+            File current = ApiUtil.findJKindJar();
+            if (!current.equals(jar) || current.length() != jarLength || current.lastModified() != jarModified) {
+                jar = current;
+                jarLength = current.length();
+                jarModified = current.lastModified();
+                jarDigest = null;
+                MessageDigest digest = newDigest();
+                try (InputStream in = new FileInputStream(current)) {
+                    byte[] buffer = new byte[8192];
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        digest.update(buffer, 0, read);
+                    }
+                }
+                jarDigest = toHex(digest.digest());
+            }
+            return jarDigest;
+        } catch (JKindException | IOException e) {
+            jar = null;
+            return null;
+        }
+    }
+
+    private static String getKey(String jarDigest, String options, Program program) {
+        MessageDigest digest = newDigest();
+        digest.update(jarDigest.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(options.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(program.toString().getBytes(StandardCharsets.UTF_8));
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Deletes the least recently used entries until the cache fits in
+     * {@link #MAX_SIZE} bytes.
+     */
+    private synchronized void evict() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        // replays touch entries concurrently, so sort by a snapshot of the times
+        final Map<File, Long> modified = new HashMap<>();
+        for (File file : files) {
+            modified.put(file, file.lastModified());
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(modified.get(b), modified.get(a));
+            }
+        });
+        long size = 0;
+        for (File file : files) {
+            if (!file.getName().endsWith(".xml")) {
+                continue;
+            }
+            size += file.length();
+            if (size > MAX_SIZE) {
+                file.delete();
+            }
+        }
+    }
+
+    private boolean replay(File file, JKindResult result) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return false;
+        }
+
+        XmlParseThread parser = new XmlParseThread(null, result, Backend.JKIND);
+        StringBuilder buffer = null;
+        try {
+            for (String line : lines) {
+                if (line.startsWith("<Property ")) {
+                    buffer = new StringBuilder();
+                }
+                if (buffer != null) {
+                    buffer.append(line);
+                }
+                if (line.startsWith("</Property>")) {
+                    parser.parsePropetyXml(buffer.toString(), null);
+                    buffer = null;
+                }
+            }
+        } catch (JKindException e) {
+            // a damaged entry is rerun and overwritten
+            return false;
+        }
+
+        result.setText("Results reused from " + file);
+        result.done();
+        return true;
+    }
+
+    private boolean store(File file, List<PropertyResult> propertyResults) {
+        if (propertyResults.isEmpty()) {
+            return false;
+        }
+
+        StringBuilder xml = new StringBuilder();
+        xml.append("<?xml version=\"1.0\"?>\n");
+        xml.append("<" + RESULTS_TAG + ">\n");
+        for (PropertyResult pr : propertyResults) {
+            Status status = pr.getStatus();
+            if (status != Status.VALID && status != Status.INVALID) {
+                return false;
+            }
+            if (!writeProperty(xml, pr.getProperty())) {
+                return false;
+            }
+        }
+        xml.append("</" + RESULTS_TAG + ">\n");
+
+        try {
+            directory.mkdirs();
+            File temp = File.createTempFile("result", ".tmp", directory);
+            Files.write(temp.toPath(), xml.toString().getBytes(StandardCharsets.UTF_8));
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        } catch (IOException e) {
+            // the cache is only an optimization
+            return false;
+        }
+    }
+
+    private static boolean writeProperty(StringBuilder xml, Property prop) {
+        xml.append("<Property name=\"" + escape(prop.getName()) + "\">\n");
+        xml.append("<Runtime unit=\"sec\">" + prop.getRuntime() + "</Runtime>\n");
+
+        Counterexample cex = null;
+        if (prop instanceof ValidProperty) {
+            ValidProperty valid = (ValidProperty) prop;
+            xml.append("<K>" + valid.getK() + "</K>\n");
+            xml.append("<Answer source=\"" + escape(valid.getSource()) + "\">valid</Answer>\n");
+            for (String invariant : valid.getInvariants()) {
+                xml.append("<Invariant>" + escape(invariant) + "</Invariant>\n");
+            }
+        } else if (prop instanceof InvalidProperty) {
+            InvalidProperty invalid = (InvalidProperty) prop;
+            cex = invalid.getCounterexample();
+            if (cex != null) {
+                xml.append("<K>" + cex.getLength() + "</K>\n");
+            }
+            xml.append("<Answer source=\"" + escape(invalid.getSource()) + "\">falsifiable</Answer>\n");
+            if (!invalid.getConflicts().isEmpty()) {
+                xml.append("<Conflicts>\n");
+                for (String conflict : invalid.getConflicts()) {
+                    xml.append("<Conflict>" + escape(conflict) + "</Conflict>\n");
+                }
+                xml.append("</Conflicts>\n");
+            }
+        } else {
+            return false;
+        }
+
+        if (cex != null) {
+            xml.append("<Counterexample>\n");
+            for (Signal<Value> signal : cex.getSignals()) {
+                if (!writeSignal(xml, signal, cex.getLength())) {
+                    return false;
+                }
+            }
+            xml.append("</Counterexample>\n");
+        }
+        xml.append("</Property>\n");
+        return true;
+    }
+
+    private static boolean writeSignal(StringBuilder xml, Signal<Value> signal, int length) {
+        String type = null;
+        StringBuilder values = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            Value value = signal.getValue(i);
+            if (Util.isArbitrary(value)) {
+                continue;
+            }
+
+            String valueType = getType(value);
+            if (valueType == null || (type != null && !type.equals(valueType))) {
+                return false;
+            }
+            type = valueType;
+
+            values.append("<Value time=\"" + i + "\">");
+            if (value instanceof NumericInterval) {
+                NumericInterval interval = (NumericInterval) value;
+                values.append("<Interval low=\"" + interval.getLow() + "\" high=\"" + interval.getHigh()
+                        + "\"/>");
+            } else if (value instanceof BoolInterval) {
+                values.append(((BoolInterval) value).isTrue());
+            } else {
+                values.append(escape(value.toString()));
+            }
+            values.append("</Value>\n");
+        }
+
+        xml.append("<Signal name=\"" + escape(signal.getName()) + "\" type=\"" + (type == null ? "bool" : type)
+                + "\">\n");
+        xml.append(values);
+        xml.append("</Signal>\n");
+        return true;
+    }
+
+    private static String getType(Value value) {
+        if (value instanceof BooleanValue || value instanceof BoolInterval) {
+            return "bool";
+        } else if (value instanceof IntegerValue) {
+            return "int";
+        } else if (value instanceof RealValue) {
+            return "real";
+        } else if (value instanceof NumericInterval) {
+            return ((NumericInterval) value).getLow() instanceof IntEndpoint ? "int" : "real";
+        } else if (value instanceof EnumValue) {
+            return "enum";
+        }
+        return null;
+    }
+
+    private static String escape(String str) {
+        return str.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+}
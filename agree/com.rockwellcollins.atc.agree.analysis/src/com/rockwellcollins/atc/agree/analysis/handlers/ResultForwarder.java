@@ -0,0 +1,52 @@
+package com.rockwellcollins.atc.agree.analysis.handlers;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+
+import jkind.api.results.JKindResult;
+import jkind.api.results.PropertyResult;
+
+/**
+ * Passes the answers of a run into an unrenamed result on to the result shown
+ * to the user as soon as they arrive. The listener must be added to the
+ * unrenamed result before its properties are. The shown result is only
+ * changed while holding the given lock, so several runs can forward into
+ * one result tree.
+ */
+class ResultForwarder implements PropertyChangeListener {
+    private final JKindResult result;
+    private final Object lock;
+
+    public ResultForwarder(JKindResult result) {
+        this(result, result);
+    }
+
+    public ResultForwarder(JKindResult result, Object lock) {
+        this.result = result;
+        this.lock = lock;
+    }
+
+    @Override
+    public void propertyChange(PropertyChangeEvent evt) {
+        if ("propertyResults".equals(evt.getPropertyName())) {
+            ((PropertyResult) evt.getNewValue()).addPropertyChangeListener(this);
+            return;
+        }
+        if (!(evt.getSource() instanceof PropertyResult)) {
+            return;
+        }
+
+        PropertyResult rawResult = (PropertyResult) evt.getSource();
+        synchronized (lock) {
+            PropertyResult target = result.getPropertyResult(rawResult.getName());
+            if (target == null) {
+                return;
+            }
+            if ("progress".equals(evt.getPropertyName())) {
+                target.setBaseProgress((Integer) evt.getNewValue());
+            } else if ("status".equals(evt.getPropertyName()) && rawResult.getProperty() != null) {
+                target.setProperty(rawResult.getProperty());
+            }
+        }
+    }
+}
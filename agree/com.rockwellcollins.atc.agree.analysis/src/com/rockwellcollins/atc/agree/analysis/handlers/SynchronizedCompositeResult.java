@@ -0,0 +1,46 @@
+package com.rockwellcollins.atc.agree.analysis.handlers;
+
+import java.beans.PropertyChangeEvent;
+
+import jkind.api.results.AnalysisResult;
+import jkind.api.results.CompositeAnalysisResult;
+
+/**
+ * A composite result whose children report their status from different
+ * worker threads. The composites of one result tree share the lock of the
+ * root, and a composite only adds children and updates its status counts
+ * while holding it, so the tree can grow while jobs report into it.
+ * Results that forward answers into the tree from several threads use the
+ * same lock.
+ */
+public class SynchronizedCompositeResult extends CompositeAnalysisResult {
+    private final Object lock;
+
+    public SynchronizedCompositeResult(String name) {
+        super(name);
+        this.lock = this;
+    }
+
+    public SynchronizedCompositeResult(String name, SynchronizedCompositeResult root) {
+        super(name);
+        this.lock = root.getLock();
+    }
+
+    public Object getLock() {
+        return lock;
+    }
+
+    @Override
+    public void addChild(AnalysisResult child) {
+        synchronized (lock) {
+            super.addChild(child);
+        }
+    }
+
+    @Override
+    public void propertyChange(PropertyChangeEvent evt) {
+        synchronized (lock) {
+            super.propertyChange(evt);
+        }
+    }
+}
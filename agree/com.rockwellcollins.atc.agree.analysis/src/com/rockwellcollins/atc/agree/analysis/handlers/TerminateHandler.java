@@ -1,22 +1,22 @@
 package com.rockwellcollins.atc.agree.analysis.handlers;
 
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.Queue;
 
 import org.eclipse.core.commands.AbstractHandler;
 import org.eclipse.core.commands.ExecutionEvent;
 import org.eclipse.core.runtime.IProgressMonitor;
 
 public class TerminateHandler extends AbstractHandler {
-    private final AtomicReference<IProgressMonitor> monitorRef;
+    private final Queue<IProgressMonitor> activeMonitors;
     private final IProgressMonitor globalMonitor;
 
-    public TerminateHandler(AtomicReference<IProgressMonitor> monitorRef) {
-        this.monitorRef = monitorRef;
+    public TerminateHandler(Queue<IProgressMonitor> activeMonitors) {
+        this.activeMonitors = activeMonitors;
         this.globalMonitor = null;
     }
 
-    public TerminateHandler(AtomicReference<IProgressMonitor> monitorRef, IProgressMonitor globalMonitor) {
-        this.monitorRef = monitorRef;
+    public TerminateHandler(Queue<IProgressMonitor> activeMonitors, IProgressMonitor globalMonitor) {
+        this.activeMonitors = activeMonitors;
         this.globalMonitor = globalMonitor;
     }
 
@@ -24,10 +24,17 @@ public class TerminateHandler extends AbstractHandler {
     public Object execute(ExecutionEvent event) {
         if (globalMonitor != null) {
             globalMonitor.setCanceled(true);
+            for (IProgressMonitor monitor : activeMonitors) {
+                monitor.setCanceled(true);
+            }
+            return null;
         }
-        IProgressMonitor monitor = monitorRef.get();
-        if (monitor != null) {
-            monitor.setCanceled(true);
+        // terminate the analysis that has been running the longest
+        for (IProgressMonitor monitor : activeMonitors) {
+            if (!monitor.isCanceled()) {
+                monitor.setCanceled(true);
+                break;
+            }
         }
         return null;
     }
@@ -243,7 +243,7 @@ public class VerifyComposedContract extends VerifyHandler{
                 while (!queue.isEmpty() && !globalMonitor.isCanceled()) {
                     RedlogResult result = (RedlogResult) queue.peek();
                     NullProgressMonitor subMonitor = new NullProgressMonitor();
-                    monitorRef.set(subMonitor);
+                    activeMonitors.add(subMonitor);
 
                     RedlogProgram redlogProgram = linker.getRedlogProgram(result);
                     try {
@@ -264,6 +264,8 @@ public class VerifyComposedContract extends VerifyHandler{
                         System.out.println("******** Agree redlog program ********");
                         System.out.println(redlogProgram);
                         break;
+                    } finally {
+                        activeMonitors.remove(subMonitor);
                     }
                     queue.remove();
                 }
@@ -9,10 +9,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import jkind.JKindException;
-import jkind.api.JRealizabilityApi;
 import jkind.api.KindApi;
 import jkind.api.results.AnalysisResult;
 import jkind.api.results.CompositeAnalysisResult;
@@ -24,7 +23,6 @@ import jkind.lustre.VarDecl;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
-import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.emf.common.util.EList;
 import org.eclipse.emf.ecore.EObject;
@@ -63,6 +61,9 @@ import com.rockwellcollins.atc.agree.analysis.AgreeException;
 import com.rockwellcollins.atc.agree.analysis.AgreeLayout;
 import com.rockwellcollins.atc.agree.analysis.LustreAstBuilder;
 import com.rockwellcollins.atc.agree.analysis.LustreContractAstBuilder;
+import com.rockwellcollins.atc.agree.analysis.LustreCseRewriter;
+import com.rockwellcollins.atc.agree.analysis.LustreSlicer;
+import com.rockwellcollins.atc.agree.analysis.PropertyPartitioner;
 import com.rockwellcollins.atc.agree.analysis.AgreeLayout.SigType;
 import com.rockwellcollins.atc.agree.analysis.AgreeLogger;
 import com.rockwellcollins.atc.agree.analysis.AgreeRenaming;
@@ -80,7 +81,7 @@ import com.rockwellcollins.atc.agree.analysis.views.AgreeResultsView;
 public abstract class VerifyHandler extends AadlHandler {
     protected AgreeResultsLinker linker = new AgreeResultsLinker();
     protected Queue<AnalysisResult> queue = new ArrayDeque<>();
-    protected AtomicReference<IProgressMonitor> monitorRef = new AtomicReference<>();
+    protected Queue<IProgressMonitor> activeMonitors = new ConcurrentLinkedQueue<>();
 
     private static final String RERUN_ID = "com.rockwellcollins.atc.agree.analysis.commands.rerunAgree";
     private IHandlerActivation rerunActivation;
@@ -121,7 +122,7 @@ public abstract class VerifyHandler extends AadlHandler {
             }
 
             AnalysisResult result;
-            CompositeAnalysisResult wrapper = new CompositeAnalysisResult("");
+            SynchronizedCompositeResult wrapper = new SynchronizedCompositeResult("");
 
             // SystemType sysType = si.getSystemImplementation().getType();
             ComponentType sysType = AgreeUtils.getInstanceType(si);
@@ -137,9 +138,22 @@ public abstract class VerifyHandler extends AadlHandler {
                 if(AgreeUtils.usingKind2()){
                     throw new AgreeException("Kind2 only supports monolithic verification");
                 }
-                result = buildAnalysisResult(ci.getName(), si);
-                wrapper.addChild(result);
-                result = wrapper;
+                // solver jobs for a layer start as soon as its lustre is
+                // generated, while the layers below it are still translated
+                showView(wrapper, linker);
+                AnalysisScheduler scheduler = startScheduler(monitor);
+                try {
+                    // the layers share one builder so that each subtree is
+                    // only translated once
+                    buildAnalysisResult(ci.getName(), si, wrapper, new AgreeASTBuilder(), scheduler);
+                } catch (Throwable e) {
+                    queue.clear();
+                    scheduler.abort();
+                    throw e;
+                } finally {
+                    finishAnalysis(root, scheduler);
+                }
+                return Status.OK_STATUS;
             } else if (isRealizability()) {
                 AgreeProgram agreeProgram = new AgreeASTBuilder().getAgreeProgram(si);
                 Program program = LustreAstBuilder.getRealizabilityLustreProgram(agreeProgram);
@@ -147,7 +161,7 @@ public abstract class VerifyHandler extends AadlHandler {
                         createVerification("Realizability Check", si, program, agreeProgram, AnalysisType.Realizability));
                 result = wrapper;
             } else {
-                wrapVerificationResult(si, wrapper);
+                wrapVerificationResult(si, wrapper, new AgreeASTBuilder());
                 result = wrapper;
             }
             showView(result, linker);
@@ -158,8 +172,9 @@ public abstract class VerifyHandler extends AadlHandler {
         }
     }
 
-    private void wrapVerificationResult(ComponentInstance si, CompositeAnalysisResult wrapper) {
-        AgreeProgram agreeProgram = new AgreeASTBuilder().getAgreeProgram(si);
+    private void wrapVerificationResult(ComponentInstance si, CompositeAnalysisResult wrapper,
+            AgreeASTBuilder astBuilder) {
+        AgreeProgram agreeProgram = astBuilder.getAgreeProgram(si);
 
         // generate different lustre depending on which model checker we are
         // using
@@ -172,6 +187,10 @@ public abstract class VerifyHandler extends AadlHandler {
             program = LustreContractAstBuilder.getContractLustreProgram(agreeProgram);
         } else {
             program = LustreAstBuilder.getAssumeGuaranteeLustreProgram(agreeProgram, isMonolithic());
+            if (PreferencesUtil.isSlicingEnabled()) {
+                program = LustreSlicer.slice(program);
+            }
+            program = LustreCseRewriter.eliminate(program);
         }
         List<Pair<String, Program>> consistencies =
                 LustreAstBuilder.getConsistencyChecks(agreeProgram, isMonolithic());
@@ -179,8 +198,9 @@ public abstract class VerifyHandler extends AadlHandler {
         wrapper.addChild(
                 createVerification("Contract Guarantees", si, program, agreeProgram, AnalysisType.AssumeGuarantee));
         for (Pair<String, Program> consistencyAnalysis : consistencies) {
-            wrapper.addChild(createVerification(consistencyAnalysis.getFirst(), si,
-                    consistencyAnalysis.getSecond(), agreeProgram, AnalysisType.Consistency));
+            Program consistProgram = LustreCseRewriter.eliminate(consistencyAnalysis.getSecond());
+            wrapper.addChild(createVerification(consistencyAnalysis.getFirst(), si, consistProgram,
+                    agreeProgram, AnalysisType.Consistency));
         }
     }
 
@@ -197,41 +217,31 @@ public abstract class VerifyHandler extends AadlHandler {
         return sw.toString();
     }
 
-    private AnalysisResult buildAnalysisResult(String name, ComponentInstance ci) {
-        CompositeAnalysisResult result = new CompositeAnalysisResult("Verification for " + name);
-
-        if (containsAGREEAnnex(ci)) {
-            wrapVerificationResult(ci, result);
-            ComponentImplementation compImpl = AgreeUtils.getInstanceImplementation(ci);
-            for (ComponentInstance subInst : ci.getComponentInstances()) {
-                if (AgreeUtils.getInstanceImplementation(subInst) != null) {
-                    AnalysisResult buildAnalysisResult = buildAnalysisResult(subInst.getName(), subInst);
-                    if (buildAnalysisResult != null) {
-                        result.addChild(buildAnalysisResult);
-                    }
-                }
-            }
+    private void buildAnalysisResult(String name, ComponentInstance ci, SynchronizedCompositeResult parent,
+            AgreeASTBuilder astBuilder, AnalysisScheduler scheduler) {
+        if (!containsAGREEAnnex(ci, astBuilder)) {
+            return;
+        }
+        SynchronizedCompositeResult result = new SynchronizedCompositeResult("Verification for " + name, parent);
+        ComponentImplementation compImpl = AgreeUtils.getInstanceImplementation(ci);
+        linker.setComponent(result, compImpl);
+        parent.addChild(result);
 
-            if (result.getChildren().size() != 0) {
-                linker.setComponent(result, compImpl);
-                return result;
+        wrapVerificationResult(ci, result, astBuilder);
+        submitQueuedJobs(scheduler);
+        for (ComponentInstance subInst : ci.getComponentInstances()) {
+            if (AgreeUtils.getInstanceImplementation(subInst) != null) {
+                buildAnalysisResult(subInst.getName(), subInst, result, astBuilder, scheduler);
             }
         }
-        return null;
     }
 
-    private boolean containsAGREEAnnex(ComponentInstance ci) {
+    private boolean containsAGREEAnnex(ComponentInstance ci, AgreeASTBuilder astBuilder) {
         ComponentClassifier compClass = ci.getComponentClassifier();
         if (compClass instanceof ComponentImplementation) {
             compClass = ((ComponentImplementation) compClass).getType();
         }
-        for (AnnexSubclause annex : AnnexUtil.getAllAnnexSubclauses(compClass,
-                AgreePackage.eINSTANCE.getAgreeContractSubclause())) {
-            if (annex instanceof AgreeContractSubclause) {
-                return true;
-            }
-        }
-        return false;
+        return astBuilder.hasAgreeAnnex(compClass);
     }
 
     private AnalysisResult createVerification(String resultName, ComponentInstance compInst, Program lustreProgram, AgreeProgram agreeProgram,
@@ -431,61 +441,178 @@ public abstract class VerifyHandler extends AadlHandler {
     }
 
     private IStatus doAnalysis(final Element root, final IProgressMonitor globalMonitor) {
+        AnalysisScheduler scheduler = startScheduler(globalMonitor);
+        submitQueuedJobs(scheduler);
+        return finishAnalysis(root, scheduler);
+    }
 
-        Thread analysisThread = new Thread() {
-            public void run() {
-                activateTerminateHandlers(globalMonitor);
-                KindApi api = PreferencesUtil.getKindApi();
-                KindApi consistApi = PreferencesUtil.getConsistencyApi();
-                JRealizabilityApi realApi = PreferencesUtil.getJRealizabilityApi();
-
-                while (!queue.isEmpty() && !globalMonitor.isCanceled()) {
-                    JKindResult result = (JKindResult) queue.peek();
-                    NullProgressMonitor subMonitor = new NullProgressMonitor();
-                    monitorRef.set(subMonitor);
-
-                    Program program = linker.getProgram(result);
-                    try {
-                        if (result instanceof ConsistencyResult) {
-                            consistApi.execute(program, result, subMonitor);
-                        } else if (result instanceof JRealizabilityResult) {
-                            realApi.execute(program, (JRealizabilityResult) result, subMonitor);
-                        } else {
-                            api.execute(program, result, subMonitor);
-                        }
-                    } catch (JKindException e) {
-                        System.out.println("******** JKindException Text ********");
-                        e.printStackTrace(System.out);
-                        System.out.println("******** JKind Output ********");
-                        System.out.println(result.getText());
-                        System.out.println("******** Agree Lustre ********");
-                        System.out.println(program);
-                        break;
-                    }
-                    queue.remove();
-                }
+    private AnalysisScheduler startScheduler(IProgressMonitor globalMonitor) {
+        activateTerminateHandlers(globalMonitor);
+        return new AnalysisScheduler(PreferencesUtil.getParallelJobs(), globalMonitor, activeMonitors);
+    }
 
-                while (!queue.isEmpty()) {
-                    ((JKindResult) queue.remove()).cancel();
+    private void submitQueuedJobs(AnalysisScheduler scheduler) {
+        while (!queue.isEmpty()) {
+            JKindResult result = (JKindResult) queue.remove();
+            List<List<String>> groups = getPropertyGroups(result);
+            if (groups.size() > 1) {
+                // each group is checked on its own sliced program and reports
+                // into the result already shown in the view
+                Program program = linker.getProgram(result);
+                GroupedResult grouped = new GroupedResult(result, groups.size(), getResultLock(result));
+                for (List<String> group : groups) {
+                    Program groupProgram = LustreSlicer.slice(program, group);
+                    scheduler.submit(new PropertyGroupJob(grouped, group, groupProgram));
                 }
+            } else {
+                scheduler.submit(new VerificationJob(result));
+            }
+        }
+    }
+
+    private static Object getResultLock(JKindResult result) {
+        if (result.getParent() instanceof SynchronizedCompositeResult) {
+            return ((SynchronizedCompositeResult) result.getParent()).getLock();
+        }
+        return result;
+    }
+
+    private List<List<String>> getPropertyGroups(JKindResult result) {
+        String grouping = PreferencesUtil.getPropertyGrouping();
+        if (result instanceof ConsistencyResult || result instanceof JRealizabilityResult
+                || AgreeUtils.usingKind2() || grouping.equals(PreferenceConstants.GROUPING_NONE)) {
+            return Collections.emptyList();
+        }
+        return PropertyPartitioner.partition(linker.getProgram(result), grouping,
+                PreferencesUtil.getPropertyGroupSize());
+    }
+
+    private IStatus finishAnalysis(final Element root, final AnalysisScheduler scheduler) {
+
+        Thread analysisThread = new Thread() {
+            public void run() {
+                scheduler.awaitCompletion();
 
                 deactivateTerminateHandlers();
                 enableRerunHandler(root);
 
+                List<Throwable> errors = scheduler.getErrors();
+                if (!errors.isEmpty()) {
+                    Dialog.showError("AGREE Analysis", getNestedMessages(errors.get(0)));
+                }
+
             }
         };
         analysisThread.start();
         return Status.OK_STATUS;
     }
 
+    private class VerificationJob implements AnalysisScheduler.AnalysisJob {
+        private final JKindResult result;
+
+        public VerificationJob(JKindResult result) {
+            this.result = result;
+        }
+
+        @Override
+        public void execute(IProgressMonitor monitor) {
+            Program program = linker.getProgram(result);
+            try {
+                if (result instanceof ConsistencyResult) {
+                    execute(PreferencesUtil.getConsistencyApi(), PreferencesUtil.getSolverOptions(true),
+                            program, monitor);
+                } else if (result instanceof JRealizabilityResult) {
+                    PreferencesUtil.getJRealizabilityApi().execute(program, (JRealizabilityResult) result,
+                            monitor);
+                } else {
+                    execute(PreferencesUtil.getKindApi(), PreferencesUtil.getSolverOptions(false), program,
+                            monitor);
+                }
+            } catch (JKindException e) {
+                printException(e, result, program);
+                throw e;
+            }
+        }
+
+        private void execute(KindApi api, String options, Program program, IProgressMonitor monitor) {
+            executeKind(api, options, program, result, monitor);
+        }
+
+        @Override
+        public void cancel() {
+            result.cancel();
+        }
+    }
+
+    /**
+     * Checks one group of the properties of a result.
+     */
+    private class PropertyGroupJob implements AnalysisScheduler.AnalysisJob {
+        private final GroupedResult grouped;
+        private final List<String> properties;
+        private final Program program;
+        private boolean finished = false;
+
+        public PropertyGroupJob(GroupedResult grouped, List<String> properties, Program program) {
+            this.grouped = grouped;
+            this.properties = properties;
+            this.program = program;
+        }
+
+        @Override
+        public void execute(IProgressMonitor monitor) {
+            JKindResult groupResult = grouped.startGroup(properties);
+            boolean completed = false;
+            try {
+                executeKind(PreferencesUtil.getKindApi(), PreferencesUtil.getSolverOptions(false), program,
+                        groupResult, monitor);
+                completed = true;
+            } catch (JKindException e) {
+                printException(e, groupResult, program);
+                throw e;
+            } finally {
+                finished = true;
+                grouped.finishGroup(groupResult, !completed || monitor.isCanceled());
+            }
+        }
+
+        @Override
+        public void cancel() {
+            if (!finished) {
+                finished = true;
+                grouped.cancelGroup(properties);
+            }
+        }
+    }
+
+    private static void executeKind(KindApi api, String options, Program program, JKindResult result,
+            IProgressMonitor monitor) {
+        if (PreferencesUtil.isResultCacheEnabled()) {
+            ResultCache.getDefault().execute(api, options, program, result, monitor);
+        } else {
+            api.execute(program, result, monitor);
+        }
+    }
+
+    private static void printException(JKindException e, JKindResult result, Program program) {
+        synchronized (System.out) {
+            System.out.println("******** JKindException Text ********");
+            e.printStackTrace(System.out);
+            System.out.println("******** JKind Output ********");
+            System.out.println(result.getText());
+            System.out.println("******** Agree Lustre ********");
+            System.out.println(program);
+        }
+    }
+
     protected void activateTerminateHandlers(final IProgressMonitor globalMonitor) {
         getWindow().getShell().getDisplay().syncExec(new Runnable() {
             @Override
             public void run() {
                 terminateActivation =
-                        handlerService.activateHandler(TERMINATE_ID, new TerminateHandler(monitorRef));
+                        handlerService.activateHandler(TERMINATE_ID, new TerminateHandler(activeMonitors));
                 terminateAllActivation = handlerService.activateHandler(TERMINATE_ALL_ID,
-                        new TerminateHandler(monitorRef, globalMonitor));
+                        new TerminateHandler(activeMonitors, globalMonitor));
             }
         });
     }
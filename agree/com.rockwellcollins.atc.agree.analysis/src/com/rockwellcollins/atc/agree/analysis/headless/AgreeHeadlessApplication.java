@@ -0,0 +1,379 @@
+package com.rockwellcollins.atc.agree.analysis.headless;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import jkind.JKindException;
+import jkind.api.KindApi;
+import jkind.api.results.JKindResult;
+import jkind.api.results.PropertyResult;
+import jkind.api.results.Status;
+import jkind.lustre.Node;
+import jkind.lustre.Program;
+import jkind.lustre.VarDecl;
+
+import org.eclipse.core.resources.IncrementalProjectBuilder;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.equinox.app.IApplication;
+import org.eclipse.equinox.app.IApplicationContext;
+import org.eclipse.xtext.util.Pair;
+import org.osate.aadl2.ComponentImplementation;
+import org.osate.aadl2.instance.ComponentInstance;
+import org.osate.aadl2.instance.SystemInstance;
+import org.osate.aadl2.instantiation.InstantiateModel;
+import org.osate.aadl2.modelsupport.resources.OsateResourceUtil;
+import org.osate.annexsupport.AnnexUtil;
+
+import com.rockwellcollins.atc.agree.agree.AgreePackage;
+import com.rockwellcollins.atc.agree.agree.AssumeStatement;
+import com.rockwellcollins.atc.agree.agree.GuaranteeStatement;
+import com.rockwellcollins.atc.agree.agree.LemmaStatement;
+import com.rockwellcollins.atc.agree.analysis.AgreeException;
+import com.rockwellcollins.atc.agree.analysis.AgreeUtils;
+import com.rockwellcollins.atc.agree.analysis.ConsistencyResult;
+import com.rockwellcollins.atc.agree.analysis.LustreAstBuilder;
+import com.rockwellcollins.atc.agree.analysis.LustreContractAstBuilder;
+import com.rockwellcollins.atc.agree.analysis.LustreCseRewriter;
+import com.rockwellcollins.atc.agree.analysis.LustreSlicer;
+import com.rockwellcollins.atc.agree.analysis.ast.AgreeASTBuilder;
+import com.rockwellcollins.atc.agree.analysis.ast.AgreeProgram;
+import com.rockwellcollins.atc.agree.analysis.ast.AgreeVar;
+import com.rockwellcollins.atc.agree.analysis.handlers.AnalysisScheduler;
+import com.rockwellcollins.atc.agree.analysis.handlers.ResultCache;
+import com.rockwellcollins.atc.agree.analysis.preferences.PreferencesUtil;
+
+/**
+ * Runs AGREE verification without the workbench. The application is started
+ * with the Eclipse launcher, for example
+ *
+ * <pre>
+ * eclipse -nosplash -application com.rockwellcollins.atc.agree.analysis.verify
+ *         -data &lt;workspace&gt; -component Pkg::Sys.impl [-mode single|all|monolithic]
+ *         [-output results.xml|results.json] [-format xml|json] [-parallel n] files...
+ * </pre>
+ *
+ * Files are either workspace paths (/Project/pkg.aadl) or paths on disk. The
+ * model checker settings are taken from the AGREE preferences of the given
+ * workspace. The exit code is 0 if every property is valid, 1 if some
+ * property is not and 2 if the analysis could not be run.
+ */
+public class AgreeHeadlessApplication implements IApplication {
+
+    private static final int EXIT_NOT_VALID = 1;
+    private static final int EXIT_ERROR = 2;
+
+    private enum Mode {
+        SINGLE, ALL, MONOLITHIC
+    }
+
+    private String componentName;
+    private Mode mode = Mode.SINGLE;
+    private String output;
+    private String format;
+    private int parallelJobs = -1;
+    private final List<String> files = new ArrayList<>();
+
+    private final List<Analysis> analyses = new ArrayList<>();
+    private final AgreeASTBuilder astBuilder = new AgreeASTBuilder();
+
+    private static class Analysis {
+        final String layer;
+        final JKindResult result;
+        final Program program;
+        final Map<String, String> descriptions;
+
+        Analysis(String layer, JKindResult result, Program program, Map<String, String> descriptions) {
+            this.layer = layer;
+            this.result = result;
+            this.program = program;
+            this.descriptions = descriptions;
+        }
+    }
+
+    @Override
+    public Object start(IApplicationContext context) throws Exception {
+        String[] args = (String[]) context.getArguments().get(IApplicationContext.APPLICATION_ARGS);
+        try {
+            parseArguments(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            printUsage();
+            return EXIT_ERROR;
+        }
+
+        try {
+            ComponentImplementation compImpl = loadComponent();
+            SystemInstance si = InstantiateModel.buildInstanceModelFile(compImpl);
+            if (mode == Mode.ALL) {
+                if (AgreeUtils.usingKind2()) {
+                    throw new AgreeException("Kind2 only supports monolithic verification");
+                }
+                addLayers(si.getName(), si);
+            } else {
+                addLayer(si.getName(), si);
+            }
+            runAnalyses();
+            writeResults(compImpl.getQualifiedName());
+        } catch (Throwable e) {
+            for (Throwable t = e; t != null; t = t.getCause()) {
+                if (t.getMessage() != null && !t.getMessage().isEmpty()) {
+                    System.err.println(t.getMessage());
+                }
+            }
+            return EXIT_ERROR;
+        }
+
+        for (Analysis analysis : analyses) {
+            for (PropertyResult propResult : analysis.result.getPropertyResults()) {
+                if (propResult.getStatus() != Status.VALID) {
+                    return EXIT_NOT_VALID;
+                }
+            }
+        }
+        return IApplication.EXIT_OK;
+    }
+
+    @Override
+    public void stop() {
+    }
+
+    private void parseArguments(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+            case "-component":
+                componentName = getValue(args, ++i, arg);
+                break;
+            case "-mode":
+                try {
+                    mode = Mode.valueOf(getValue(args, ++i, arg).toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Unknown mode '" + args[i] + "'");
+                }
+                break;
+            case "-output":
+                output = getValue(args, ++i, arg);
+                break;
+            case "-format":
+                format = getValue(args, ++i, arg).toLowerCase();
+                break;
+            case "-parallel":
+                try {
+                    parallelJobs = Integer.parseInt(getValue(args, ++i, arg));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Expected a number after '-parallel'");
+                }
+                break;
+            default:
+                if (arg.startsWith("-")) {
+                    throw new IllegalArgumentException("Unknown option '" + arg + "'");
+                }
+                files.add(arg);
+            }
+        }
+
+        if (componentName == null) {
+            throw new IllegalArgumentException("No component implementation given");
+        }
+        if (files.isEmpty()) {
+            throw new IllegalArgumentException("No AADL files given");
+        }
+        if (format == null) {
+            format = output != null && output.toLowerCase().endsWith(".json") ? "json" : "xml";
+        }
+        if (!format.equals("xml") && !format.equals("json")) {
+            throw new IllegalArgumentException("Unknown output format '" + format + "'");
+        }
+    }
+
+    private static String getValue(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for '" + option + "'");
+        }
+        return args[index];
+    }
+
+    private static void printUsage() {
+        System.err.println("Usage: -component <Package::Type.Impl> [-mode single|all|monolithic]");
+        System.err.println("       [-output <file>] [-format xml|json] [-parallel <n>] <aadl files>...");
+    }
+
+    private ComponentImplementation loadComponent() throws Exception {
+        // the workspace index is needed to resolve property sets and
+        // references between packages
+        ResourcesPlugin.getWorkspace().build(IncrementalProjectBuilder.INCREMENTAL_BUILD,
+                new NullProgressMonitor());
+
+        ResourceSet resourceSet = OsateResourceUtil.getResourceSet();
+        List<Resource> resources = new ArrayList<>();
+        for (String file : files) {
+            File diskFile = new File(file);
+            URI uri = diskFile.isFile() ? URI.createFileURI(diskFile.getAbsolutePath())
+                    : URI.createPlatformResourceURI(file, true);
+            resources.add(resourceSet.getResource(uri, true));
+        }
+
+        for (Resource resource : resources) {
+            Iterator<EObject> iter = resource.getAllContents();
+            while (iter.hasNext()) {
+                EObject obj = iter.next();
+                if (obj instanceof ComponentImplementation
+                        && componentName.equalsIgnoreCase(((ComponentImplementation) obj).getQualifiedName())) {
+                    return (ComponentImplementation) obj;
+                }
+            }
+        }
+        throw new AgreeException("Could not find component implementation '" + componentName + "'");
+    }
+
+    private void addLayers(String name, ComponentInstance compInst) {
+        if (AnnexUtil.getAllAnnexSubclauses(AgreeUtils.getInstanceType(compInst),
+                AgreePackage.eINSTANCE.getAgreeContractSubclause()).isEmpty()) {
+            return;
+        }
+        addLayer(name, compInst);
+        for (ComponentInstance subInst : compInst.getComponentInstances()) {
+            if (AgreeUtils.getInstanceImplementation(subInst) != null) {
+                addLayers(name + "." + subInst.getName(), subInst);
+            }
+        }
+    }
+
+    private void addLayer(String layer, ComponentInstance compInst) {
+        AgreeProgram agreeProgram = astBuilder.getAgreeProgram(compInst);
+        boolean monolithic = mode == Mode.MONOLITHIC;
+
+        Program program;
+        if (AgreeUtils.usingKind2()) {
+            if (!monolithic) {
+                throw new AgreeException("Kind2 now only supports monolithic verification");
+            }
+            program = LustreContractAstBuilder.getContractLustreProgram(agreeProgram);
+        } else {
+            program = LustreAstBuilder.getAssumeGuaranteeLustreProgram(agreeProgram, monolithic);
+            if (PreferencesUtil.isSlicingEnabled()) {
+                program = LustreSlicer.slice(program);
+            }
+            program = LustreCseRewriter.eliminate(program);
+        }
+        List<Pair<String, Program>> consistencies = LustreAstBuilder.getConsistencyChecks(agreeProgram,
+                monolithic);
+
+        Node mainNode = getMainNode(program);
+        analyses.add(new Analysis(layer, new JKindResult("Contract Guarantees", mainNode.properties), program,
+                getDescriptions(mainNode)));
+        for (Pair<String, Program> consistency : consistencies) {
+            Program consistProgram = LustreCseRewriter.eliminate(consistency.getSecond());
+            Node consistNode = getMainNode(consistProgram);
+            JKindResult result = new ConsistencyResult(consistency.getFirst(), consistNode.properties,
+                    Collections.singletonList(true), null);
+            analyses.add(new Analysis(layer, result, consistProgram, getDescriptions(consistNode)));
+        }
+    }
+
+    private static Node getMainNode(Program program) {
+        for (Node node : program.nodes) {
+            if (node.id.equals(program.main)) {
+                return node;
+            }
+        }
+        throw new AgreeException("Could not find main lustre node after translation");
+    }
+
+    private static Map<String, String> getDescriptions(Node mainNode) {
+        Map<String, String> descriptions = new HashMap<>();
+        List<VarDecl> vars = new ArrayList<>(mainNode.inputs);
+        vars.addAll(mainNode.locals);
+        for (VarDecl var : vars) {
+            if (!mainNode.properties.contains(var.id) || !(var instanceof AgreeVar)) {
+                continue;
+            }
+            EObject reference = ((AgreeVar) var).reference;
+            if (reference instanceof GuaranteeStatement) {
+                descriptions.put(var.id, ((GuaranteeStatement) reference).getStr());
+            } else if (reference instanceof LemmaStatement) {
+                descriptions.put(var.id, "lemma: " + ((LemmaStatement) reference).getStr());
+            } else if (reference instanceof AssumeStatement) {
+                descriptions.put(var.id, "assume: " + ((AssumeStatement) reference).getStr());
+            }
+        }
+        return descriptions;
+    }
+
+    private void runAnalyses() throws Throwable {
+        int numThreads = parallelJobs > 0 ? parallelJobs : PreferencesUtil.getParallelJobs();
+        AnalysisScheduler scheduler = new AnalysisScheduler(numThreads, new NullProgressMonitor(),
+                new ConcurrentLinkedQueue<IProgressMonitor>());
+        for (final Analysis analysis : analyses) {
+            scheduler.submit(new AnalysisScheduler.AnalysisJob() {
+                @Override
+                public void execute(IProgressMonitor monitor) {
+                    try {
+                        boolean consistency = analysis.result instanceof ConsistencyResult;
+                        KindApi api = consistency ? PreferencesUtil.getConsistencyApi()
+                                : PreferencesUtil.getKindApi();
+                        if (PreferencesUtil.isResultCacheEnabled()) {
+                            ResultCache.getDefault().execute(api, PreferencesUtil.getSolverOptions(consistency),
+                                    analysis.program, analysis.result, monitor);
+                        } else {
+                            api.execute(analysis.program, analysis.result, monitor);
+                        }
+                    } catch (JKindException e) {
+                        synchronized (System.err) {
+                            System.err.println("Error in '" + analysis.layer + "' " + analysis.result.getName()
+                                    + ": " + e.getMessage());
+                            System.err.println(analysis.result.getText());
+                        }
+                        throw e;
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                    analysis.result.cancel();
+                }
+            });
+        }
+        scheduler.awaitCompletion();
+
+        // a solver error is not a failed property, so exit with EXIT_ERROR
+        List<Throwable> errors = scheduler.getErrors();
+        if (!errors.isEmpty()) {
+            throw errors.get(0);
+        }
+    }
+
+    private void writeResults(String component) throws Exception {
+        PrintWriter out;
+        if (output == null) {
+            out = new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        } else {
+            out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(output), StandardCharsets.UTF_8));
+        }
+        ResultsWriter writer = format.equals("json") ? new JsonResultsWriter(out) : new XmlResultsWriter(out);
+        writer.begin(component);
+        for (Analysis analysis : analyses) {
+            writer.writeAnalysis(analysis.layer, analysis.result, analysis.descriptions);
+        }
+        writer.end();
+        if (output != null) {
+            out.close();
+        }
+    }
+}
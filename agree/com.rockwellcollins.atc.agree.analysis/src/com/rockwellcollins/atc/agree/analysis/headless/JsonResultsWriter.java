@@ -0,0 +1,127 @@
+package com.rockwellcollins.atc.agree.analysis.headless;
+
+import java.io.PrintWriter;
+import java.util.Map;
+
+import jkind.api.results.JKindResult;
+import jkind.api.results.PropertyResult;
+import jkind.lustre.values.Value;
+import jkind.results.Counterexample;
+import jkind.results.InvalidProperty;
+import jkind.results.Property;
+import jkind.results.Signal;
+import jkind.util.Util;
+
+public class JsonResultsWriter extends ResultsWriter {
+    private final PrintWriter out;
+    private boolean firstAnalysis;
+
+    public JsonResultsWriter(PrintWriter out) {
+        this.out = out;
+    }
+
+    @Override
+    public void begin(String component) {
+        out.println("{");
+        out.println("  \"component\": " + quote(component) + ",");
+        out.print("  \"analyses\": [");
+        firstAnalysis = true;
+    }
+
+    @Override
+    public void end() {
+        out.println();
+        out.println("  ]");
+        out.println("}");
+        out.flush();
+    }
+
+    @Override
+    public void writeAnalysis(String layer, JKindResult result, Map<String, String> descriptions) {
+        out.println(firstAnalysis ? "" : ",");
+        firstAnalysis = false;
+        out.println("    {");
+        out.println("      \"layer\": " + quote(layer) + ",");
+        out.println("      \"name\": " + quote(result.getName()) + ",");
+        out.print("      \"properties\": [");
+        boolean firstProp = true;
+        for (PropertyResult propResult : result.getPropertyResults()) {
+            out.println(firstProp ? "" : ",");
+            firstProp = false;
+            String name = propResult.getName();
+            out.println("        {");
+            out.println("          \"name\": " + quote(name) + ",");
+            out.println("          \"description\": " + quote(descriptions.get(name)) + ",");
+            Property prop = propResult.getProperty();
+            if (prop != null) {
+                out.println("          \"runtime\": " + prop.getRuntime() + ",");
+                if (prop instanceof InvalidProperty) {
+                    writeCounterexample(((InvalidProperty) prop).getCounterexample());
+                }
+            }
+            out.println("          \"answer\": " + quote(propResult.getStatus().toString()));
+            out.print("        }");
+        }
+        out.println();
+        out.println("      ]");
+        out.print("    }");
+        out.flush();
+    }
+
+    private void writeCounterexample(Counterexample cex) {
+        if (cex == null) {
+            return;
+        }
+        out.println("          \"counterexample\": {");
+        out.println("            \"length\": " + cex.getLength() + ",");
+        out.print("            \"signals\": {");
+        boolean firstSignal = true;
+        for (Signal<Value> signal : cex.getSignals()) {
+            out.println(firstSignal ? "" : ",");
+            firstSignal = false;
+            StringBuilder values = new StringBuilder();
+            for (int i = 0; i < cex.getLength(); i++) {
+                Value value = signal.getValue(i);
+                values.append(i == 0 ? "" : ", ");
+                values.append(Util.isArbitrary(value) ? "null" : quote(value.toString()));
+            }
+            out.print("              " + quote(signal.getName()) + ": [" + values + "]");
+        }
+        out.println();
+        out.println("            }");
+        out.println("          },");
+    }
+
+    private static String quote(String str) {
+        if (str == null) {
+            return "null";
+        }
+        StringBuilder builder = new StringBuilder("\"");
+        for (char c : str.toCharArray()) {
+            switch (c) {
+            case '"':
+                builder.append("\\\"");
+                break;
+            case '\\':
+                builder.append("\\\\");
+                break;
+            case '\n':
+                builder.append("\\n");
+                break;
+            case '\r':
+                builder.append("\\r");
+                break;
+            case '\t':
+                builder.append("\\t");
+                break;
+            default:
+                if (c < 0x20) {
+                    builder.append(String.format("\\u%04x", (int) c));
+                } else {
+                    builder.append(c);
+                }
+            }
+        }
+        return builder.append('"').toString();
+    }
+}
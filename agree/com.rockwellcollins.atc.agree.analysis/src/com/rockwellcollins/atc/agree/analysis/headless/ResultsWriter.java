@@ -0,0 +1,18 @@
+package com.rockwellcollins.atc.agree.analysis.headless;
+
+import java.util.Map;
+
+import jkind.api.results.JKindResult;
+
+public abstract class ResultsWriter {
+    public abstract void begin(String component);
+
+    public abstract void end();
+
+    /**
+     * Writes the property results of one analysis. The descriptions map
+     * property ids of the generated lustre to the AGREE statements they came
+     * from.
+     */
+    public abstract void writeAnalysis(String layer, JKindResult result, Map<String, String> descriptions);
+}
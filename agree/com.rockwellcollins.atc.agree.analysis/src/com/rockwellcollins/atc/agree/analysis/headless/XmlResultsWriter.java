@@ -0,0 +1,80 @@
+package com.rockwellcollins.atc.agree.analysis.headless;
+
+import java.io.PrintWriter;
+import java.util.Map;
+
+import jkind.api.results.JKindResult;
+import jkind.api.results.PropertyResult;
+import jkind.lustre.values.Value;
+import jkind.results.Counterexample;
+import jkind.results.InvalidProperty;
+import jkind.results.Property;
+import jkind.results.Signal;
+import jkind.util.Util;
+
+public class XmlResultsWriter extends ResultsWriter {
+    private final PrintWriter out;
+
+    public XmlResultsWriter(PrintWriter out) {
+        this.out = out;
+    }
+
+    @Override
+    public void begin(String component) {
+        out.println("<?xml version=\"1.0\"?>");
+        out.println("<AgreeResults component=\"" + escape(component) + "\">");
+    }
+
+    @Override
+    public void end() {
+        out.println("</AgreeResults>");
+        out.flush();
+    }
+
+    @Override
+    public void writeAnalysis(String layer, JKindResult result, Map<String, String> descriptions) {
+        out.println("  <Analysis layer=\"" + escape(layer) + "\" name=\"" + escape(result.getName()) + "\">");
+        for (PropertyResult propResult : result.getPropertyResults()) {
+            String name = propResult.getName();
+            String description = descriptions.get(name);
+            out.print("    <Property name=\"" + escape(name) + "\"");
+            if (description != null) {
+                out.print(" description=\"" + escape(description) + "\"");
+            }
+            out.println(">");
+            out.println("      <Answer>" + propResult.getStatus() + "</Answer>");
+            Property prop = propResult.getProperty();
+            if (prop != null) {
+                out.println("      <Runtime unit=\"sec\">" + prop.getRuntime() + "</Runtime>");
+                if (prop instanceof InvalidProperty) {
+                    writeCounterexample(((InvalidProperty) prop).getCounterexample());
+                }
+            }
+            out.println("    </Property>");
+        }
+        out.println("  </Analysis>");
+        out.flush();
+    }
+
+    private void writeCounterexample(Counterexample cex) {
+        if (cex == null) {
+            return;
+        }
+        out.println("      <Counterexample length=\"" + cex.getLength() + "\">");
+        for (Signal<Value> signal : cex.getSignals()) {
+            out.println("        <Signal name=\"" + escape(signal.getName()) + "\">");
+            for (int i = 0; i < cex.getLength(); i++) {
+                Value value = signal.getValue(i);
+                if (!Util.isArbitrary(value)) {
+                    out.println("          <Value time=\"" + i + "\">" + escape(value.toString()) + "</Value>");
+                }
+            }
+            out.println("        </Signal>");
+        }
+        out.println("      </Counterexample>");
+    }
+
+    private static String escape(String str) {
+        return str.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+}
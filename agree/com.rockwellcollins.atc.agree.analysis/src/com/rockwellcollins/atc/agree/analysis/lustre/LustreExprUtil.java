@@ -0,0 +1,45 @@
+package com.rockwellcollins.atc.agree.analysis.lustre;
+
+import java.util.List;
+
+import jkind.lustre.BinaryExpr;
+import jkind.lustre.BinaryOp;
+import jkind.lustre.BoolExpr;
+import jkind.lustre.Expr;
+
+/**
+ * Builds conjunctions and disjunctions of many expressions as balanced trees.
+ * Folding a list into a chain of binary expressions gives a tree as deep as
+ * the list is long, which recursive visitors of the solver and of the
+ * analysis have to walk one stack frame per element. A balanced tree is only
+ * logarithmically deep.
+ */
+public class LustreExprUtil {
+
+    public static Expr and(List<? extends Expr> exprs) {
+        return balance(BinaryOp.AND, exprs, true);
+    }
+
+    public static Expr or(List<? extends Expr> exprs) {
+        return balance(BinaryOp.OR, exprs, false);
+    }
+
+    /**
+     * Combines the expressions with an associative operator, returning
+     * {@code new BoolExpr(unit)} for an empty list.
+     */
+    private static Expr balance(BinaryOp op, List<? extends Expr> exprs, boolean unit) {
+        if (exprs.isEmpty()) {
+            return new BoolExpr(unit);
+        }
+        return balance(op, exprs, 0, exprs.size());
+    }
+
+    private static Expr balance(BinaryOp op, List<? extends Expr> exprs, int from, int to) {
+        if (to - from == 1) {
+            return exprs.get(from);
+        }
+        int mid = (from + to) >>> 1;
+        return new BinaryExpr(balance(op, exprs, from, mid), op, balance(op, exprs, mid, to));
+    }
+}
@@ -0,0 +1,521 @@
+package com.rockwellcollins.atc.agree.analysis.lustre.visitors;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import jkind.lustre.ArrayAccessExpr;
+import jkind.lustre.ArrayExpr;
+import jkind.lustre.ArrayUpdateExpr;
+import jkind.lustre.BinaryExpr;
+import jkind.lustre.BoolExpr;
+import jkind.lustre.CastExpr;
+import jkind.lustre.CondactExpr;
+import jkind.lustre.Expr;
+import jkind.lustre.IdExpr;
+import jkind.lustre.IfThenElseExpr;
+import jkind.lustre.InductDataExpr;
+import jkind.lustre.IntExpr;
+import jkind.lustre.NodeCallExpr;
+import jkind.lustre.QuantExpr;
+import jkind.lustre.RealExpr;
+import jkind.lustre.RecordAccessExpr;
+import jkind.lustre.RecordExpr;
+import jkind.lustre.RecordUpdateExpr;
+import jkind.lustre.TupleExpr;
+import jkind.lustre.UnaryExpr;
+import jkind.lustre.VarDecl;
+import jkind.lustre.visitors.ExprVisitor;
+
+/**
+ * Shares structurally identical expressions. Interning an expression returns
+ * the first expression seen with the same structure, so equal expressions
+ * can be compared with {@code ==} and are kept in memory only once.
+ * <p>
+ * Expressions are interned bottom up: the children of an interned expression
+ * are interned themselves, so two expressions are identical exactly when
+ * their operators and scalar fields are equal and their children are the
+ * same objects. An expression that was returned by this interner before is
+ * returned unchanged without visiting it again. The expression is walked
+ * with explicit stacks instead of recursion, so arbitrarily deep expressions
+ * do not overflow the stack, and subexpressions shared within the expression
+ * are only interned once.
+ * <p>
+ * An interner is not thread-safe.
+ */
+public class ExprInterner implements ExprVisitor<Expr> {
+
+    private final Map<Key, Expr> table = new HashMap<>();
+    private final Set<Expr> interned = Collections.newSetFromMap(new IdentityHashMap<Expr, Boolean>());
+    private final Children children = new Children();
+
+    public Expr intern(Expr root) {
+        if (root == null || interned.contains(root)) {
+            return root;
+        }
+        Builder builder = new Builder();
+        Map<Expr, Expr> done = new IdentityHashMap<>();
+        Deque<Expr> todo = new ArrayDeque<>();
+        Deque<Boolean> expanded = new ArrayDeque<>();
+
+        todo.push(root);
+        expanded.push(false);
+        while (!todo.isEmpty()) {
+            Expr e = todo.pop();
+            Expr result = interned.contains(e) ? e : done.get(e);
+            if (result != null) {
+                expanded.pop();
+                builder.results.push(result);
+            } else if (expanded.pop()) {
+                result = e.accept(builder);
+                done.put(e, result);
+                builder.results.push(result);
+            } else {
+                // the children are interned before the expression itself,
+                // leaving their results on the stack in order
+                todo.push(e);
+                expanded.push(true);
+                List<Expr> args = e.accept(children);
+                for (int i = args.size() - 1; i >= 0; i--) {
+                    todo.push(args.get(i));
+                    expanded.push(false);
+                }
+            }
+        }
+        return builder.results.pop();
+    }
+
+    public List<Expr> intern(List<? extends Expr> exprs) {
+        List<Expr> result = new ArrayList<>(exprs.size());
+        for (Expr e : exprs) {
+            result.add(intern(e));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the expression already registered for the key, or registers
+     * the given one.
+     */
+    private Expr lookup(Expr e, Object... parts) {
+        Key key = new Key(e.getClass(), parts);
+        Expr existing = table.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        table.put(key, e);
+        interned.add(e);
+        return e;
+    }
+
+    @Override
+    public Expr visit(ArrayAccessExpr e) {
+        return intern(e);
+    }
+
+    @Override
+    public Expr visit(ArrayExpr e) {
+        return intern(e);
+    }
+
+    @Override
+    public Expr visit(ArrayUpdateExpr e) {
+        return intern(e);
+    }
+
+    @Override
+    public Expr visit(BinaryExpr e) {
+        return intern(e);
+    }
+
+    @Override
+    public Expr visit(BoolExpr e) {
+        return intern(e);
+    }
+
+    @Override
+    public Expr visit(CastExpr e) {
+        return intern(e);
+    }
+
+    @Override
+    public Expr visit(CondactExpr e) {
+        return intern(e);
+    }
+
+    @Override
+    public Expr visit(IdExpr e) {
+        return intern(e);
+    }
+
+    @Override
+    public Expr visit(IfThenElseExpr e) {
+        return intern(e);
+    }
+
+    @Override
+    public Expr visit(InductDataExpr e) {
+        return intern(e);
+    }
+
+    @Override
+    public Expr visit(IntExpr e) {
+        return intern(e);
+    }
+
+    @Override
+    public Expr visit(NodeCallExpr e) {
+        return intern(e);
+    }
+
+    @Override
+    public Expr visit(QuantExpr e) {
+        return intern(e);
+    }
+
+    @Override
+    public Expr visit(RealExpr e) {
+        return intern(e);
+    }
+
+    @Override
+    public Expr visit(RecordAccessExpr e) {
+        return intern(e);
+    }
+
+    @Override
+    public Expr visit(RecordExpr e) {
+        return intern(e);
+    }
+
+    @Override
+    public Expr visit(RecordUpdateExpr e) {
+        return intern(e);
+    }
+
+    @Override
+    public Expr visit(TupleExpr e) {
+        return intern(e);
+    }
+
+    @Override
+    public Expr visit(UnaryExpr e) {
+        return intern(e);
+    }
+
+    /**
+     * Lists the children of an expression in the order the builder takes
+     * their interned results.
+     */
+    private static class Children implements ExprVisitor<List<Expr>> {
+
+        @Override
+        public List<Expr> visit(ArrayAccessExpr e) {
+            return Arrays.asList(e.array, e.index);
+        }
+
+        @Override
+        public List<Expr> visit(ArrayExpr e) {
+            return e.elements;
+        }
+
+        @Override
+        public List<Expr> visit(ArrayUpdateExpr e) {
+            return Arrays.asList(e.array, e.index, e.value);
+        }
+
+        @Override
+        public List<Expr> visit(BinaryExpr e) {
+            return Arrays.asList(e.left, e.right);
+        }
+
+        @Override
+        public List<Expr> visit(BoolExpr e) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<Expr> visit(CastExpr e) {
+            return Collections.singletonList(e.expr);
+        }
+
+        @Override
+        public List<Expr> visit(CondactExpr e) {
+            List<Expr> result = new ArrayList<>();
+            result.add(e.clock);
+            result.add(e.call);
+            result.addAll(e.args);
+            return result;
+        }
+
+        @Override
+        public List<Expr> visit(IdExpr e) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<Expr> visit(IfThenElseExpr e) {
+            return Arrays.asList(e.cond, e.thenExpr, e.elseExpr);
+        }
+
+        @Override
+        public List<Expr> visit(InductDataExpr e) {
+            return e.args;
+        }
+
+        @Override
+        public List<Expr> visit(IntExpr e) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<Expr> visit(NodeCallExpr e) {
+            return e.args;
+        }
+
+        @Override
+        public List<Expr> visit(QuantExpr e) {
+            return Collections.singletonList(e.expr);
+        }
+
+        @Override
+        public List<Expr> visit(RealExpr e) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<Expr> visit(RecordAccessExpr e) {
+            return Collections.singletonList(e.record);
+        }
+
+        @Override
+        public List<Expr> visit(RecordExpr e) {
+            return new ArrayList<>(e.fields.values());
+        }
+
+        @Override
+        public List<Expr> visit(RecordUpdateExpr e) {
+            return Arrays.asList(e.record, e.value);
+        }
+
+        @Override
+        public List<Expr> visit(TupleExpr e) {
+            return e.elements;
+        }
+
+        @Override
+        public List<Expr> visit(UnaryExpr e) {
+            return Collections.singletonList(e.expr);
+        }
+    }
+
+    /**
+     * Interns an expression given the interned results of its children,
+     * which are on top of the result stack.
+     */
+    private class Builder implements ExprVisitor<Expr> {
+        private final Deque<Expr> results = new ArrayDeque<>();
+
+        private List<Expr> popResults(int count) {
+            Expr[] args = new Expr[count];
+            for (int i = count - 1; i >= 0; i--) {
+                args[i] = results.pop();
+            }
+            return new ArrayList<>(Arrays.asList(args));
+        }
+
+        @Override
+        public Expr visit(ArrayAccessExpr e) {
+            List<Expr> args = popResults(2);
+            Expr array = args.get(0);
+            Expr index = args.get(1);
+            return lookup(new ArrayAccessExpr(e.location, array, index), array, index);
+        }
+
+        @Override
+        public Expr visit(ArrayExpr e) {
+            List<Expr> elements = popResults(e.elements.size());
+            return lookup(new ArrayExpr(e.location, elements), elements.toArray());
+        }
+
+        @Override
+        public Expr visit(ArrayUpdateExpr e) {
+            List<Expr> args = popResults(3);
+            Expr array = args.get(0);
+            Expr index = args.get(1);
+            Expr value = args.get(2);
+            return lookup(new ArrayUpdateExpr(e.location, array, index, value), array, index, value);
+        }
+
+        @Override
+        public Expr visit(BinaryExpr e) {
+            List<Expr> args = popResults(2);
+            Expr left = args.get(0);
+            Expr right = args.get(1);
+            return lookup(new BinaryExpr(e.location, left, e.op, right), left, e.op, right);
+        }
+
+        @Override
+        public Expr visit(BoolExpr e) {
+            return lookup(e, e.value);
+        }
+
+        @Override
+        public Expr visit(CastExpr e) {
+            Expr expr = results.pop();
+            return lookup(new CastExpr(e.location, e.type, expr), e.type, expr);
+        }
+
+        @Override
+        public Expr visit(CondactExpr e) {
+            List<Expr> values = popResults(e.args.size() + 2);
+            Expr clock = values.get(0);
+            NodeCallExpr call = (NodeCallExpr) values.get(1);
+            List<Expr> args = new ArrayList<>(values.subList(2, values.size()));
+            return lookup(new CondactExpr(e.location, clock, call, args), clock, call, args.toArray());
+        }
+
+        @Override
+        public Expr visit(IdExpr e) {
+            return lookup(e, e.id);
+        }
+
+        @Override
+        public Expr visit(IfThenElseExpr e) {
+            List<Expr> args = popResults(3);
+            Expr cond = args.get(0);
+            Expr thenExpr = args.get(1);
+            Expr elseExpr = args.get(2);
+            return lookup(new IfThenElseExpr(e.location, cond, thenExpr, elseExpr), cond, thenExpr, elseExpr);
+        }
+
+        @Override
+        public Expr visit(InductDataExpr e) {
+            List<Expr> args = popResults(e.args.size());
+            return lookup(new InductDataExpr(e.location, e.name, args), e.name, args.toArray());
+        }
+
+        @Override
+        public Expr visit(IntExpr e) {
+            return lookup(e, e.value);
+        }
+
+        @Override
+        public Expr visit(NodeCallExpr e) {
+            List<Expr> args = popResults(e.args.size());
+            return lookup(new NodeCallExpr(e.location, e.node, args), e.node, args.toArray());
+        }
+
+        @Override
+        public Expr visit(QuantExpr e) {
+            Expr expr = results.pop();
+            List<Object> boundVars = new ArrayList<>();
+            for (VarDecl var : e.boundVars) {
+                boundVars.add(var.id);
+                boundVars.add(var.type);
+            }
+            return lookup(new QuantExpr(e.location, e.op, e.boundVars, expr), e.op, boundVars, expr);
+        }
+
+        @Override
+        public Expr visit(RealExpr e) {
+            return lookup(e, e.value);
+        }
+
+        @Override
+        public Expr visit(RecordAccessExpr e) {
+            Expr record = results.pop();
+            return lookup(new RecordAccessExpr(e.location, record, e.field), record, e.field);
+        }
+
+        @Override
+        public Expr visit(RecordExpr e) {
+            List<Expr> values = popResults(e.fields.size());
+            Map<String, Expr> fields = new LinkedHashMap<>();
+            List<Object> parts = new ArrayList<>();
+            parts.add(e.id);
+            int i = 0;
+            for (String field : e.fields.keySet()) {
+                Expr value = values.get(i++);
+                fields.put(field, value);
+                parts.add(field);
+                parts.add(value);
+            }
+            return lookup(new RecordExpr(e.location, e.id, fields), parts.toArray());
+        }
+
+        @Override
+        public Expr visit(RecordUpdateExpr e) {
+            List<Expr> args = popResults(2);
+            Expr record = args.get(0);
+            Expr value = args.get(1);
+            return lookup(new RecordUpdateExpr(e.location, record, e.field, value), record, e.field, value);
+        }
+
+        @Override
+        public Expr visit(TupleExpr e) {
+            List<Expr> elements = popResults(e.elements.size());
+            return lookup(new TupleExpr(e.location, elements), elements.toArray());
+        }
+
+        @Override
+        public Expr visit(UnaryExpr e) {
+            Expr expr = results.pop();
+            return lookup(new UnaryExpr(e.location, e.op, expr), e.op, expr);
+        }
+    }
+
+    /**
+     * The class and fields of an expression whose children are interned.
+     * Expressions do not override equals, so children are compared by
+     * identity. The hash code is computed once.
+     */
+    private static class Key {
+        private final Class<?> type;
+        private final Object[] parts;
+        private final int hash;
+
+        public Key(Class<?> type, Object[] parts) {
+            this.type = type;
+            this.parts = flatten(parts);
+            this.hash = 31 * type.hashCode() + Arrays.hashCode(this.parts);
+        }
+
+        private static Object[] flatten(Object[] parts) {
+            List<Object> result = new ArrayList<>();
+            for (Object part : parts) {
+                if (part instanceof Object[]) {
+                    // argument lists are kept apart from the following fields
+                    Object[] list = (Object[]) part;
+                    result.add(list.length);
+                    result.addAll(Arrays.asList(list));
+                } else {
+                    result.add(part);
+                }
+            }
+            return result.toArray();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash && type == other.type && Arrays.equals(parts, other.parts);
+        }
+    }
+}
@@ -1,9 +1,10 @@
 package com.rockwellcollins.atc.agree.analysis.lustre.visitors;
 
-import java.util.ArrayList;
+import java.util.ArrayDeque;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashSet;
-import java.util.List;
+import java.util.IdentityHashMap;
 import java.util.Map.Entry;
 import java.util.Set;
 
@@ -31,29 +32,41 @@ import jkind.lustre.TupleExpr;
 import jkind.lustre.UnaryExpr;
 import jkind.lustre.visitors.ExprVisitor;
 
+/**
+ * Gathers the ids an expression refers to. The expression is walked with an
+ * explicit work list instead of recursion, so arbitrarily deep expressions
+ * do not overflow the stack, and subexpressions shared within the expression
+ * are only walked once.
+ */
 public class IdGatherer implements ExprVisitor<Set<String>> {
 
+    private Set<String> gather(Expr root) {
+        Step step = new Step();
+        step.schedule(root);
+        while (!step.worklist.isEmpty()) {
+            step.worklist.pop().accept(step);
+        }
+        return step.ids;
+    }
+
     @Override
     public Set<String> visit(ArrayAccessExpr e) {
-        throw new AgreeException("We do not support array expressions");
+        return gather(e);
     }
 
     @Override
     public Set<String> visit(ArrayExpr e) {
-        throw new AgreeException("We do not support array expressions");
+        return gather(e);
     }
 
     @Override
     public Set<String> visit(ArrayUpdateExpr e) {
-        throw new AgreeException("We do not support array expressions");
+        return gather(e);
     }
 
     @Override
     public Set<String> visit(BinaryExpr e) {
-        Set<String> ids = new HashSet<>();
-        ids.addAll(e.left.accept(this));
-        ids.addAll(e.right.accept(this));
-        return ids;
+        return gather(e);
     }
 
     @Override
@@ -63,20 +76,12 @@ public class IdGatherer implements ExprVisitor<Set<String>> {
 
     @Override
     public Set<String> visit(CastExpr e) {
-        Set<String> ids = new HashSet<>();
-        ids.addAll(e.expr.accept(this));
-        return ids;
+        return gather(e);
     }
 
     @Override
     public Set<String> visit(CondactExpr e) {
-        Set<String> ids = new HashSet<>();
-        for (Expr expr : e.args) {
-            ids.addAll(expr.accept(this));
-        }
-        ids.addAll(e.call.accept(this));
-        ids.addAll(e.clock.accept(this));
-        return ids;
+        return gather(e);
     }
 
     @Override
@@ -86,11 +91,7 @@ public class IdGatherer implements ExprVisitor<Set<String>> {
 
     @Override
     public Set<String> visit(IfThenElseExpr e) {
-        Set<String> ids = new HashSet<>();
-        ids.addAll(e.cond.accept(this));
-        ids.addAll(e.thenExpr.accept(this));
-        ids.addAll(e.elseExpr.accept(this));
-        return ids;
+        return gather(e);
     }
 
     @Override
@@ -100,11 +101,7 @@ public class IdGatherer implements ExprVisitor<Set<String>> {
 
     @Override
     public Set<String> visit(NodeCallExpr e) {
-        Set<String> ids = new HashSet<>();
-        for (Expr expr : e.args) {
-            ids.addAll(expr.accept(this));
-        }
-        return ids;
+        return gather(e);
     }
 
     @Override
@@ -114,50 +111,171 @@ public class IdGatherer implements ExprVisitor<Set<String>> {
 
     @Override
     public Set<String> visit(RecordAccessExpr e) {
-        Set<String> ids = new HashSet<>();
-        ids.addAll(e.record.accept(this));
-        return ids;
+        return gather(e);
     }
 
     @Override
     public Set<String> visit(RecordExpr e) {
-        Set<String> ids = new HashSet<>();
-        for (Entry<String, Expr> entry : e.fields.entrySet()) {
-            ids.addAll(entry.getValue().accept(this));
-        }
-        return ids;
+        return gather(e);
     }
 
     @Override
     public Set<String> visit(RecordUpdateExpr e) {
-        Set<String> ids = new HashSet<>();
-        ids.addAll(e.record.accept(this));
-        ids.addAll(e.value.accept(this));
-        return ids;
+        return gather(e);
     }
 
     @Override
     public Set<String> visit(TupleExpr e) {
-        Set<String> ids = new HashSet<>();
-        for (Expr expr : e.elements) {
-            ids.addAll(expr.accept(this));
-        }
-        return ids;
+        return gather(e);
     }
 
     @Override
     public Set<String> visit(UnaryExpr e) {
-        return e.expr.accept(this);
+        return gather(e);
     }
 
     @Override
     public Set<String> visit(InductDataExpr e) {
-        throw new AgreeException("We do not support Quantified Expressions or Inductive Datatypes");
+        return gather(e);
     }
 
     @Override
     public Set<String> visit(QuantExpr e) {
-        throw new AgreeException("We do not support Quantified Expressions or Inductive Datatypes");
+        return gather(e);
     }
 
+    /**
+     * Adds the id of a single expression or schedules its children.
+     */
+    private static class Step implements ExprVisitor<Void> {
+        private final Set<String> ids = new HashSet<>();
+        private final Deque<Expr> worklist = new ArrayDeque<>();
+        private final Set<Expr> seen = Collections.newSetFromMap(new IdentityHashMap<Expr, Boolean>());
+
+        private void schedule(Expr e) {
+            if (seen.add(e)) {
+                worklist.push(e);
+            }
+        }
+
+        private void scheduleAll(Iterable<Expr> exprs) {
+            for (Expr e : exprs) {
+                schedule(e);
+            }
+        }
+
+        @Override
+        public Void visit(ArrayAccessExpr e) {
+            throw new AgreeException("We do not support array expressions");
+        }
+
+        @Override
+        public Void visit(ArrayExpr e) {
+            throw new AgreeException("We do not support array expressions");
+        }
+
+        @Override
+        public Void visit(ArrayUpdateExpr e) {
+            throw new AgreeException("We do not support array expressions");
+        }
+
+        @Override
+        public Void visit(BinaryExpr e) {
+            schedule(e.left);
+            schedule(e.right);
+            return null;
+        }
+
+        @Override
+        public Void visit(BoolExpr e) {
+            return null;
+        }
+
+        @Override
+        public Void visit(CastExpr e) {
+            schedule(e.expr);
+            return null;
+        }
+
+        @Override
+        public Void visit(CondactExpr e) {
+            scheduleAll(e.args);
+            schedule(e.call);
+            schedule(e.clock);
+            return null;
+        }
+
+        @Override
+        public Void visit(IdExpr e) {
+            ids.add(e.id);
+            return null;
+        }
+
+        @Override
+        public Void visit(IfThenElseExpr e) {
+            schedule(e.cond);
+            schedule(e.thenExpr);
+            schedule(e.elseExpr);
+            return null;
+        }
+
+        @Override
+        public Void visit(IntExpr e) {
+            return null;
+        }
+
+        @Override
+        public Void visit(NodeCallExpr e) {
+            scheduleAll(e.args);
+            return null;
+        }
+
+        @Override
+        public Void visit(RealExpr e) {
+            return null;
+        }
+
+        @Override
+        public Void visit(RecordAccessExpr e) {
+            schedule(e.record);
+            return null;
+        }
+
+        @Override
+        public Void visit(RecordExpr e) {
+            for (Entry<String, Expr> entry : e.fields.entrySet()) {
+                schedule(entry.getValue());
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(RecordUpdateExpr e) {
+            schedule(e.record);
+            schedule(e.value);
+            return null;
+        }
+
+        @Override
+        public Void visit(TupleExpr e) {
+            scheduleAll(e.elements);
+            return null;
+        }
+
+        @Override
+        public Void visit(UnaryExpr e) {
+            schedule(e.expr);
+            return null;
+        }
+
+        @Override
+        public Void visit(InductDataExpr e) {
+            throw new AgreeException("We do not support Quantified Expressions or Inductive Datatypes");
+        }
+
+        @Override
+        public Void visit(QuantExpr e) {
+            throw new AgreeException("We do not support Quantified Expressions or Inductive Datatypes");
+        }
+    }
 }
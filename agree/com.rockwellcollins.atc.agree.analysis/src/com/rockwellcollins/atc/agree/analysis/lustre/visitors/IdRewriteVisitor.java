@@ -1,7 +1,12 @@
 package com.rockwellcollins.atc.agree.analysis.lustre.visitors;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -30,6 +35,12 @@ import jkind.lustre.TupleExpr;
 import jkind.lustre.UnaryExpr;
 import jkind.lustre.visitors.ExprVisitor;
 
+/**
+ * Copies an expression, replacing its ids as given by an {@link IdRewriter}.
+ * The expression is rewritten bottom up with explicit stacks instead of
+ * recursion, so arbitrarily deep expressions do not overflow the stack, and
+ * subexpressions shared within the expression are only rewritten once.
+ */
 public class IdRewriteVisitor implements ExprVisitor<Expr> {
 
     private final IdRewriter rewriter;
@@ -38,113 +49,359 @@ public class IdRewriteVisitor implements ExprVisitor<Expr> {
         this.rewriter = rewriter;
     }
 
+    private Expr rewrite(Expr root) {
+        Builder builder = new Builder();
+        Children children = new Children();
+        Map<Expr, Expr> rewritten = new IdentityHashMap<>();
+        Deque<Expr> todo = new ArrayDeque<>();
+        Deque<Boolean> expanded = new ArrayDeque<>();
+
+        todo.push(root);
+        expanded.push(false);
+        while (!todo.isEmpty()) {
+            Expr e = todo.pop();
+            Expr done = rewritten.get(e);
+            if (done != null) {
+                expanded.pop();
+                builder.results.push(done);
+            } else if (expanded.pop()) {
+                done = e.accept(builder);
+                rewritten.put(e, done);
+                builder.results.push(done);
+            } else {
+                // the children are rewritten before the expression itself,
+                // leaving their results on the stack in order
+                todo.push(e);
+                expanded.push(true);
+                List<Expr> args = e.accept(children);
+                for (int i = args.size() - 1; i >= 0; i--) {
+                    todo.push(args.get(i));
+                    expanded.push(false);
+                }
+            }
+        }
+        return builder.results.pop();
+    }
+
     @Override
     public Expr visit(ArrayAccessExpr e) {
-        throw new AgreeException("We do not support array expressions");
+        return rewrite(e);
     }
 
     @Override
     public Expr visit(ArrayExpr e) {
-        throw new AgreeException("We do not support array expressions");
+        return rewrite(e);
     }
 
     @Override
     public Expr visit(ArrayUpdateExpr e) {
-        throw new AgreeException("We do not support array expressions");
+        return rewrite(e);
     }
 
     @Override
     public Expr visit(BinaryExpr e) {
-        return new BinaryExpr(e.left.accept(this), e.op, e.right.accept(this));
+        return rewrite(e);
     }
 
     @Override
     public Expr visit(BoolExpr e) {
-        return new BoolExpr(e.value);
+        return rewrite(e);
     }
 
     @Override
     public Expr visit(CastExpr e) {
-        return new CastExpr(e.type, e.expr.accept(this));
+        return rewrite(e);
     }
 
     @Override
     public Expr visit(CondactExpr e) {
-        return new CondactExpr(e.clock.accept(this), (NodeCallExpr) e.call.accept(this), acceptList(e.args));
+        return rewrite(e);
     }
 
     @Override
     public Expr visit(IdExpr e) {
-        return rewriter.rewrite(e);
+        return rewrite(e);
     }
 
     @Override
     public Expr visit(IfThenElseExpr e) {
-        return new IfThenElseExpr(e.cond.accept(this), e.thenExpr.accept(this), e.elseExpr.accept(this));
+        return rewrite(e);
     }
 
     @Override
     public Expr visit(IntExpr e) {
-        return new IntExpr(e.value);
+        return rewrite(e);
     }
 
     @Override
     public Expr visit(NodeCallExpr e) {
-        return new NodeCallExpr(e.node, acceptList(e.args));
+        return rewrite(e);
     }
 
     @Override
     public Expr visit(RealExpr e) {
-        return new RealExpr(e.value);
+        return rewrite(e);
     }
 
     @Override
     public Expr visit(RecordAccessExpr e) {
-        return new RecordAccessExpr(e.record.accept(this), e.field);
+        return rewrite(e);
     }
 
     @Override
     public Expr visit(RecordExpr e) {
-        Map<String, Expr> newFields = new HashMap<>();
-        for (Entry<String, Expr> entry : e.fields.entrySet()) {
-            newFields.put(entry.getKey(), entry.getValue().accept(this));
-        }
-        return new RecordExpr(e.id, newFields);
+        return rewrite(e);
     }
 
     @Override
     public Expr visit(RecordUpdateExpr e) {
-        return new RecordUpdateExpr(e.record.accept(this), e.field, e.value.accept(this));
+        return rewrite(e);
     }
 
     @Override
     public Expr visit(TupleExpr e) {
-        throw new AgreeException("We do not currently support typles");
+        return rewrite(e);
     }
 
     @Override
     public Expr visit(UnaryExpr e) {
-        return new UnaryExpr(e.op, e.expr.accept(this));
-    }
-
-    private List<Expr> acceptList(List<Expr> exprs) {
-        List<Expr> result = new ArrayList<>();
-
-        for (Expr expr : exprs) {
-            result.add(expr.accept(this));
-        }
-
-        return result;
+        return rewrite(e);
     }
 
     @Override
     public Expr visit(InductDataExpr e) {
-        throw new AgreeException("We do not support Quantified Expressions or Inductive Datatypes");
+        return rewrite(e);
     }
 
     @Override
     public Expr visit(QuantExpr e) {
-        throw new AgreeException("We do not support Quantified Expressions or Inductive Datatypes");
+        return rewrite(e);
     }
 
+    /**
+     * Lists the children of an expression in the order the builder takes
+     * their rewritten results.
+     */
+    private static class Children implements ExprVisitor<List<Expr>> {
+
+        @Override
+        public List<Expr> visit(ArrayAccessExpr e) {
+            throw new AgreeException("We do not support array expressions");
+        }
+
+        @Override
+        public List<Expr> visit(ArrayExpr e) {
+            throw new AgreeException("We do not support array expressions");
+        }
+
+        @Override
+        public List<Expr> visit(ArrayUpdateExpr e) {
+            throw new AgreeException("We do not support array expressions");
+        }
+
+        @Override
+        public List<Expr> visit(BinaryExpr e) {
+            return Arrays.asList(e.left, e.right);
+        }
+
+        @Override
+        public List<Expr> visit(BoolExpr e) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<Expr> visit(CastExpr e) {
+            return Collections.singletonList(e.expr);
+        }
+
+        @Override
+        public List<Expr> visit(CondactExpr e) {
+            List<Expr> result = new ArrayList<>();
+            result.add(e.clock);
+            result.add(e.call);
+            result.addAll(e.args);
+            return result;
+        }
+
+        @Override
+        public List<Expr> visit(IdExpr e) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<Expr> visit(IfThenElseExpr e) {
+            return Arrays.asList(e.cond, e.thenExpr, e.elseExpr);
+        }
+
+        @Override
+        public List<Expr> visit(IntExpr e) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<Expr> visit(NodeCallExpr e) {
+            return e.args;
+        }
+
+        @Override
+        public List<Expr> visit(RealExpr e) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<Expr> visit(RecordAccessExpr e) {
+            return Collections.singletonList(e.record);
+        }
+
+        @Override
+        public List<Expr> visit(RecordExpr e) {
+            return new ArrayList<>(e.fields.values());
+        }
+
+        @Override
+        public List<Expr> visit(RecordUpdateExpr e) {
+            return Arrays.asList(e.record, e.value);
+        }
+
+        @Override
+        public List<Expr> visit(TupleExpr e) {
+            throw new AgreeException("We do not currently support typles");
+        }
+
+        @Override
+        public List<Expr> visit(UnaryExpr e) {
+            return Collections.singletonList(e.expr);
+        }
+
+        @Override
+        public List<Expr> visit(InductDataExpr e) {
+            throw new AgreeException("We do not support Quantified Expressions or Inductive Datatypes");
+        }
+
+        @Override
+        public List<Expr> visit(QuantExpr e) {
+            throw new AgreeException("We do not support Quantified Expressions or Inductive Datatypes");
+        }
+    }
+
+    /**
+     * Rebuilds an expression from the rewritten results of its children,
+     * which are on top of the result stack.
+     */
+    private class Builder implements ExprVisitor<Expr> {
+        private final Deque<Expr> results = new ArrayDeque<>();
+
+        private List<Expr> popResults(int count) {
+            Expr[] args = new Expr[count];
+            for (int i = count - 1; i >= 0; i--) {
+                args[i] = results.pop();
+            }
+            return new ArrayList<>(Arrays.asList(args));
+        }
+
+        @Override
+        public Expr visit(ArrayAccessExpr e) {
+            throw new AgreeException("We do not support array expressions");
+        }
+
+        @Override
+        public Expr visit(ArrayExpr e) {
+            throw new AgreeException("We do not support array expressions");
+        }
+
+        @Override
+        public Expr visit(ArrayUpdateExpr e) {
+            throw new AgreeException("We do not support array expressions");
+        }
+
+        @Override
+        public Expr visit(BinaryExpr e) {
+            List<Expr> args = popResults(2);
+            return new BinaryExpr(args.get(0), e.op, args.get(1));
+        }
+
+        @Override
+        public Expr visit(BoolExpr e) {
+            return new BoolExpr(e.value);
+        }
+
+        @Override
+        public Expr visit(CastExpr e) {
+            return new CastExpr(e.type, results.pop());
+        }
+
+        @Override
+        public Expr visit(CondactExpr e) {
+            List<Expr> args = popResults(e.args.size() + 2);
+            return new CondactExpr(args.get(0), (NodeCallExpr) args.get(1), args.subList(2, args.size()));
+        }
+
+        @Override
+        public Expr visit(IdExpr e) {
+            return rewriter.rewrite(e);
+        }
+
+        @Override
+        public Expr visit(IfThenElseExpr e) {
+            List<Expr> args = popResults(3);
+            return new IfThenElseExpr(args.get(0), args.get(1), args.get(2));
+        }
+
+        @Override
+        public Expr visit(IntExpr e) {
+            return new IntExpr(e.value);
+        }
+
+        @Override
+        public Expr visit(NodeCallExpr e) {
+            return new NodeCallExpr(e.node, popResults(e.args.size()));
+        }
+
+        @Override
+        public Expr visit(RealExpr e) {
+            return new RealExpr(e.value);
+        }
+
+        @Override
+        public Expr visit(RecordAccessExpr e) {
+            return new RecordAccessExpr(results.pop(), e.field);
+        }
+
+        @Override
+        public Expr visit(RecordExpr e) {
+            List<Expr> values = popResults(e.fields.size());
+            Map<String, Expr> newFields = new HashMap<>();
+            int i = 0;
+            for (Entry<String, Expr> entry : e.fields.entrySet()) {
+                newFields.put(entry.getKey(), values.get(i++));
+            }
+            return new RecordExpr(e.id, newFields);
+        }
+
+        @Override
+        public Expr visit(RecordUpdateExpr e) {
+            List<Expr> args = popResults(2);
+            return new RecordUpdateExpr(args.get(0), e.field, args.get(1));
+        }
+
+        @Override
+        public Expr visit(TupleExpr e) {
+            throw new AgreeException("We do not currently support typles");
+        }
+
+        @Override
+        public Expr visit(UnaryExpr e) {
+            return new UnaryExpr(e.op, results.pop());
+        }
+
+        @Override
+        public Expr visit(InductDataExpr e) {
+            throw new AgreeException("We do not support Quantified Expressions or Inductive Datatypes");
+        }
+
+        @Override
+        public Expr visit(QuantExpr e) {
+            throw new AgreeException("We do not support Quantified Expressions or Inductive Datatypes");
+        }
+    }
 }
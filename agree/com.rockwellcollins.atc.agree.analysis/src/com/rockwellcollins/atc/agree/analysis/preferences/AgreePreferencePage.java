@@ -53,6 +53,20 @@ public class AgreePreferencePage extends FieldEditorPreferencePage implements IW
                     { PreferenceConstants.SOLVER_CVC4, PreferenceConstants.SOLVER_CVC4 },
                     { PreferenceConstants.SOLVER_YICES2, PreferenceConstants.SOLVER_YICES2 } };
     private ComboFieldEditor solverFieldEditor;
+
+    private static final String[][] GROUPINGS =
+            { { PreferenceConstants.GROUPING_NONE, PreferenceConstants.GROUPING_NONE },
+                    { PreferenceConstants.GROUPING_SINGLE, PreferenceConstants.GROUPING_SINGLE },
+                    { PreferenceConstants.GROUPING_SUPPORT, PreferenceConstants.GROUPING_SUPPORT },
+                    { PreferenceConstants.GROUPING_SIZE, PreferenceConstants.GROUPING_SIZE } };
+    private ComboFieldEditor groupingFieldEditor;
+
+    private static final String[][] CALENDAR_ENCODINGS =
+            { { PreferenceConstants.CALENDAR_ENCODING_PAIRWISE,
+                    PreferenceConstants.CALENDAR_ENCODING_PAIRWISE },
+                    { PreferenceConstants.CALENDAR_ENCODING_REFERENCE,
+                            PreferenceConstants.CALENDAR_ENCODING_REFERENCE } };
+    private ComboFieldEditor calendarEncodingFieldEditor;
     private String selectedSolver;
 
     private BooleanFieldEditor inductiveCounterexampleFieldEditor;
@@ -61,6 +75,10 @@ public class AgreePreferencePage extends FieldEditorPreferencePage implements IW
     private BooleanFieldEditor generalizeFieldEditor;
     private NonNegativeIntegerFieldEditor depthFieldEditor;
     private NonNegativeIntegerFieldEditor timeoutFieldEditor;
+    private IntegerFieldEditor parallelJobsFieldEditor;
+    private BooleanFieldEditor cacheResultsFieldEditor;
+    private BooleanFieldEditor slicingFieldEditor;
+    private IntegerFieldEditor groupSizeFieldEditor;
     private NonNegativeIntegerFieldEditor pdrMaxEditor;
     private NonNegativeIntegerFieldEditor consistDepthEditor;
 
@@ -107,6 +125,35 @@ public class AgreePreferencePage extends FieldEditorPreferencePage implements IW
                 "Timeout in seconds", getFieldEditorParent());
         addField(timeoutFieldEditor);
 
+        parallelJobsFieldEditor = new IntegerFieldEditor(PreferenceConstants.PREF_PARALLEL_JOBS,
+                "Number of analyses to run in parallel", getFieldEditorParent());
+        parallelJobsFieldEditor.setValidRange(1, Integer.MAX_VALUE);
+        parallelJobsFieldEditor.setErrorMessage("Field must be a positive integer");
+        addField(parallelJobsFieldEditor);
+
+        cacheResultsFieldEditor = new BooleanFieldEditor(PreferenceConstants.PREF_CACHE_RESULTS,
+                "Reuse results of previously checked Lustre programs", getFieldEditorParent());
+        addField(cacheResultsFieldEditor);
+
+        slicingFieldEditor = new BooleanFieldEditor(PreferenceConstants.PREF_SLICE_PROGRAMS,
+                "Remove Lustre definitions that cannot affect the checked properties",
+                getFieldEditorParent());
+        addField(slicingFieldEditor);
+
+        groupingFieldEditor = new ComboFieldEditor(PreferenceConstants.PREF_PROPERTY_GROUPING,
+                "Split the properties of a layer into", GROUPINGS, getFieldEditorParent());
+        addField(groupingFieldEditor);
+
+        groupSizeFieldEditor = new IntegerFieldEditor(PreferenceConstants.PREF_PROPERTY_GROUP_SIZE,
+                "Number of properties per run", getFieldEditorParent());
+        groupSizeFieldEditor.setValidRange(1, Integer.MAX_VALUE);
+        groupSizeFieldEditor.setErrorMessage("Field must be a positive integer");
+        addField(groupSizeFieldEditor);
+
+        calendarEncodingFieldEditor = new ComboFieldEditor(PreferenceConstants.PREF_CALENDAR_ENCODING,
+                "Relate quasi-synchronous clocks of", CALENDAR_ENCODINGS, getFieldEditorParent());
+        addField(calendarEncodingFieldEditor);
+
         consistDepthEditor = new NonNegativeIntegerFieldEditor(PreferenceConstants.PREF_CONSIST_DEPTH,
                 "Depth to check consistency up to", getFieldEditorParent());
         addField(consistDepthEditor);
@@ -16,6 +16,26 @@ public class PreferenceConstants {
 
     public static final String PREF_TIMEOUT = "timeout";
 
+    public static final String PREF_PARALLEL_JOBS = "parallelJobs";
+
+    public static final String PREF_CACHE_RESULTS = "cacheResults";
+
+    public static final String PREF_SLICE_PROGRAMS = "slicePrograms";
+
+    public static final String PREF_PROPERTY_GROUPING = "propertyGrouping";
+
+    public static final String GROUPING_NONE = "All properties together";
+    public static final String GROUPING_SINGLE = "One property per run";
+    public static final String GROUPING_SUPPORT = "Properties with the same dependencies";
+    public static final String GROUPING_SIZE = "Fixed number of properties per run";
+
+    public static final String PREF_PROPERTY_GROUP_SIZE = "propertyGroupSize";
+
+    public static final String PREF_CALENDAR_ENCODING = "calendarEncoding";
+
+    public static final String CALENDAR_ENCODING_PAIRWISE = "Every pair of clocks";
+    public static final String CALENDAR_ENCODING_REFERENCE = "Every clock against the first clock";
+
     public static final String PREF_PDR_MAX = "pdrMax";
 
     public static final String PREF_SOLVER = "solver";
@@ -18,6 +18,13 @@ public class PreferenceInitializer extends AbstractPreferenceInitializer {
         store.setDefault(PreferenceConstants.PREF_SMOOTH_CEX, true);
         store.setDefault(PreferenceConstants.PREF_DEPTH, 200);
         store.setDefault(PreferenceConstants.PREF_TIMEOUT, 100);
+        store.setDefault(PreferenceConstants.PREF_PARALLEL_JOBS, 1);
+        store.setDefault(PreferenceConstants.PREF_CACHE_RESULTS, true);
+        store.setDefault(PreferenceConstants.PREF_SLICE_PROGRAMS, true);
+        store.setDefault(PreferenceConstants.PREF_PROPERTY_GROUPING, PreferenceConstants.GROUPING_NONE);
+        store.setDefault(PreferenceConstants.PREF_PROPERTY_GROUP_SIZE, 10);
+        store.setDefault(PreferenceConstants.PREF_CALENDAR_ENCODING,
+                PreferenceConstants.CALENDAR_ENCODING_PAIRWISE);
         store.setDefault(PreferenceConstants.PREF_CONSIST_DEPTH, 1);
     }
 }
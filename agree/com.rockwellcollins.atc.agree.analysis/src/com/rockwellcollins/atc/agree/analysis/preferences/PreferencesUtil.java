@@ -6,6 +6,7 @@ import jkind.api.JRealizabilityApi;
 import jkind.api.Kind2Api;
 import jkind.api.Kind2WebApi;
 import jkind.api.KindApi;
+import com.rockwellcollins.atc.agree.analysis.redlog.DerivationCache;
 import com.rockwellcollins.atc.agree.analysis.redlog.RedlogApi;
 
 import org.eclipse.jface.preference.IPreferenceStore;
@@ -24,10 +25,55 @@ public class PreferencesUtil {
         return Activator.getDefault().getPreferenceStore();
     }
 
+    public static int getParallelJobs() {
+        return Math.max(1, getPreferenceStore().getInt(PreferenceConstants.PREF_PARALLEL_JOBS));
+    }
+
+    public static boolean isResultCacheEnabled() {
+        return getPreferenceStore().getBoolean(PreferenceConstants.PREF_CACHE_RESULTS);
+    }
+
+    public static boolean isSlicingEnabled() {
+        return getPreferenceStore().getBoolean(PreferenceConstants.PREF_SLICE_PROGRAMS);
+    }
+
+    public static String getPropertyGrouping() {
+        return getPreferenceStore().getString(PreferenceConstants.PREF_PROPERTY_GROUPING);
+    }
+
+    public static int getPropertyGroupSize() {
+        return Math.max(1, getPreferenceStore().getInt(PreferenceConstants.PREF_PROPERTY_GROUP_SIZE));
+    }
+
+    public static String getCalendarEncoding() {
+        return getPreferenceStore().getString(PreferenceConstants.PREF_CALENDAR_ENCODING);
+    }
+
+    /**
+     * Returns the settings that the answers of a model checker run depend on.
+     * Results are only reused between runs with the same settings.
+     */
+    public static String getSolverOptions(boolean consistency) {
+        IPreferenceStore prefs = getPreferenceStore();
+        String[] keys = { PreferenceConstants.PREF_MODEL_CHECKER, PreferenceConstants.PREF_REMOTE_URL,
+                PreferenceConstants.PREF_SOLVER, PreferenceConstants.PREF_INDUCT_CEX,
+                PreferenceConstants.PREF_SMOOTH_CEX, PreferenceConstants.PREF_NO_KINDUCTION,
+                PreferenceConstants.PREF_DEPTH, PreferenceConstants.PREF_TIMEOUT,
+                PreferenceConstants.PREF_PDR_MAX, PreferenceConstants.PREF_CONSIST_DEPTH };
+        StringBuilder options = new StringBuilder(consistency ? "consistency" : "verification");
+        for (String key : keys) {
+            options.append(";" + key + "=" + prefs.getString(key));
+        }
+        return options.toString();
+    }
+
     public static RedlogApi getRedlogApi() {
         IPreferenceStore prefs = getPreferenceStore();
         RedlogApi api = new RedlogApi();
         api.setTimeout(prefs.getInt(PreferenceConstants.PREF_TIMEOUT));
+        if (isResultCacheEnabled()) {
+            api.setDerivationCache(DerivationCache.getDefault());
+        }
         return api;
     }
     
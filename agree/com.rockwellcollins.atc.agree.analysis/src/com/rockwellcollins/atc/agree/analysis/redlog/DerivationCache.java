@@ -0,0 +1,138 @@
+package com.rockwellcollins.atc.agree.analysis.redlog;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+import com.rockwellcollins.atc.agree.analysis.Activator;
+
+/**
+ * Stores the properties Redlog derived for a program on disk, keyed by a hash
+ * of the derivation script. The script is generated from the component
+ * contracts, connection assertions and variable sets of the program, so a
+ * program that only differs in the system properties it proves reuses the
+ * derived properties instead of eliminating their quantifiers again.
+ */
+public class DerivationCache {
+	private static final String INITIAL_SYSTEM_CONSTRAINT = "initialSystemConstraint=";
+	private static final String STRONGEST_SYSTEM_PROPERTY = "strongestSystemProperty=";
+	private static final String WEAKEST_COMPONENT_PROPERTY = "weakestComponentProperty=";
+
+	private static DerivationCache defaultCache;
+
+	private final File directory;
+
+	public DerivationCache(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Returns the cache kept in the state location of the plug-in.
+	 */
+	public static synchronized DerivationCache getDefault() {
+		if (defaultCache == null) {
+			File directory = Activator.getDefault().getStateLocation().append("redlog").toFile();
+			defaultCache = new DerivationCache(directory);
+		}
+		return defaultCache;
+	}
+
+	/**
+	 * Returns the properties derived for a program, or null if the program
+	 * has not been derived yet.
+	 */
+	public DerivedProperties get(RedlogProgram redlogProgram) {
+		File file = getFile(redlogProgram);
+		if (!file.isFile()) {
+			return null;
+		}
+
+		List<String> lines;
+		try {
+			lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			return null;
+		}
+		String isc = null;
+		String ssp = null;
+		String wcp = null;
+		for (String line : lines) {
+			if (line.startsWith(INITIAL_SYSTEM_CONSTRAINT)) {
+				isc = line.substring(INITIAL_SYSTEM_CONSTRAINT.length());
+			} else if (line.startsWith(STRONGEST_SYSTEM_PROPERTY)) {
+				ssp = line.substring(STRONGEST_SYSTEM_PROPERTY.length());
+			} else if (line.startsWith(WEAKEST_COMPONENT_PROPERTY)) {
+				wcp = line.substring(WEAKEST_COMPONENT_PROPERTY.length());
+			}
+		}
+		if (ssp == null && wcp == null) {
+			// a damaged entry is derived again and overwritten
+			return null;
+		}
+		return new DerivedProperties(isc, ssp, wcp);
+	}
+
+	public void put(RedlogProgram redlogProgram, DerivedProperties derived) {
+		if (derived.getStrongestSystemProperty() == null && derived.getWeakestComponentProperty() == null) {
+			return;
+		}
+
+		StringBuilder text = new StringBuilder();
+		appendLine(text, INITIAL_SYSTEM_CONSTRAINT, derived.getInitialSystemConstraint());
+		appendLine(text, STRONGEST_SYSTEM_PROPERTY, derived.getStrongestSystemProperty());
+		appendLine(text, WEAKEST_COMPONENT_PROPERTY, derived.getWeakestComponentProperty());
+
+		try {
+			directory.mkdirs();
+			File temp = File.createTempFile("derivation", ".tmp", directory);
+			Files.write(temp.toPath(), text.toString().getBytes(StandardCharsets.UTF_8));
+			Files.move(temp.toPath(), getFile(redlogProgram).toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			// the cache is only an optimization
+		}
+	}
+
+	private static void appendLine(StringBuilder text, String name, String formula) {
+		if (formula != null) {
+			text.append(name + formula + "\n");
+		}
+	}
+
+	private File getFile(RedlogProgram redlogProgram) {
+		return new File(directory, getKey(redlogProgram) + ".txt");
+	}
+
+	private static String getKey(RedlogProgram redlogProgram) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			// hash the script as it is generated instead of building it first
+			OutputStream discard = new OutputStream() {
+				@Override
+				public void write(int b) {
+				}
+			};
+			try (Writer out = new OutputStreamWriter(new DigestOutputStream(discard, digest),
+					StandardCharsets.UTF_8)) {
+				redlogProgram.writeDerivationScript(out);
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+			StringBuilder key = new StringBuilder();
+			for (byte b : digest.digest()) {
+				key.append(String.format("%02x", b));
+			}
+			return key.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,32 @@
+package com.rockwellcollins.atc.agree.analysis.redlog;
+
+/**
+ * The quantifier free formulas Redlog derived for the initial system
+ * constraint, the strongest system property and the weakest component
+ * property, written as Redlog input before special characters are escaped.
+ * A formula the program does not derive is null.
+ */
+public class DerivedProperties {
+	private final String initialSystemConstraint;
+	private final String strongestSystemProperty;
+	private final String weakestComponentProperty;
+
+	public DerivedProperties(String initialSystemConstraint, String strongestSystemProperty,
+			String weakestComponentProperty) {
+		this.initialSystemConstraint = initialSystemConstraint;
+		this.strongestSystemProperty = strongestSystemProperty;
+		this.weakestComponentProperty = weakestComponentProperty;
+	}
+
+	public String getInitialSystemConstraint() {
+		return initialSystemConstraint;
+	}
+
+	public String getStrongestSystemProperty() {
+		return strongestSystemProperty;
+	}
+
+	public String getWeakestComponentProperty() {
+		return weakestComponentProperty;
+	}
+}
@@ -1,13 +1,17 @@
 package com.rockwellcollins.atc.agree.analysis.redlog;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Function;
 
 import jkind.JKindException;
@@ -21,10 +25,15 @@ import jkind.util.Util;
 import org.eclipse.core.runtime.IProgressMonitor;
 
 public class RedlogApi {
+	private static final long CANCEL_POLL_MILLIS = 100;
+
 	protected Integer timeout = null;
+	protected File xmlFile = null;
+	protected DerivationCache derivationCache = null;
 
 	/**
-	 * Set a maximum run time for entire execution
+	 * Set a maximum run time for each Redlog process. A property whose proof
+	 * runs out of time is reported as unknown.
 	 * 
 	 * @param timeout
 	 *            A positive timeout in seconds
@@ -37,7 +46,33 @@ public class RedlogApi {
 	}
 
 	/**
-	 * Run Redlog on a Redlog program
+	 * Also write the results as XML once Redlog is done
+	 * 
+	 * @param xmlFile
+	 *            File to write the results to, or null for no XML output
+	 */
+	public void setXmlFile(File xmlFile) {
+		this.xmlFile = xmlFile;
+	}
+
+	/**
+	 * Keep the derived properties of each program in a cache, so the proofs
+	 * of a later program with the same derivation start from them
+	 * 
+	 * @param derivationCache
+	 *            Cache of derived properties, or null to derive them on
+	 *            every run
+	 */
+	public void setDerivationCache(DerivationCache derivationCache) {
+		this.derivationCache = derivationCache;
+	}
+
+	/**
+	 * Run Redlog on a Redlog program. The derived properties and the proof of
+	 * each property are computed by separate Redlog processes that run in
+	 * parallel, since the time quantifier elimination takes varies a lot
+	 * between properties. If the derived properties of the program are in the
+	 * derivation cache, no derivation is run and the proofs use them directly.
 	 * 
 	 * @param redlogProgram
 	 *            Redlog Program
@@ -47,8 +82,155 @@ public class RedlogApi {
 	 *            Used to check for cancellation
 	 * @throws redlog.RedlogException
 	 */
-	public void execute(RedlogProgram redlogProgram, RedlogResult result, IProgressMonitor monitor) {
-		execute(redlogProgram.toString(), result, monitor);
+	public void execute(final RedlogProgram redlogProgram, RedlogResult result, final IProgressMonitor monitor) {
+		DerivedProperties cached = derivationCache == null ? null : derivationCache.get(redlogProgram);
+		// a cached formula that Redlog could not read back is derived again
+		final DerivedProperties derived = cached != null && redlogProgram.canUse(cached) ? cached : null;
+		// a null property stands for the derivation script
+		List<String> scripts = new ArrayList<>();
+		if (derived == null) {
+			scripts.add(null);
+		}
+		scripts.addAll(redlogProgram.getProperties());
+
+		int threads = Math.min(scripts.size(), Runtime.getRuntime().availableProcessors());
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(threads, 1));
+		try {
+			result.start();
+			List<Future<ScriptOutput>> futures = new ArrayList<>();
+			for (final String property : scripts) {
+				futures.add(executor.submit(new Callable<ScriptOutput>() {
+					@Override
+					public ScriptOutput call() throws Exception {
+						return runScript(writeRedlogFile(redlogProgram, property, derived), monitor);
+					}
+				}));
+			}
+			List<ScriptOutput> outputs = new ArrayList<>();
+			for (Future<ScriptOutput> future : futures) {
+				outputs.add(future.get());
+			}
+
+			if (!monitor.isCanceled()) {
+				if (derived == null) {
+					ScriptOutput derivation = outputs.remove(0);
+					result.setInitialSystemConstraint(derivation.output.getInitialSystemConstraint());
+					result.setStrongestSystemProperty(derivation.output.getStrongestSystemProperty());
+					result.setWeakestComponentProperty(derivation.output.getWeakestComponentProperty());
+					if (derivationCache != null && !derivation.timedOut) {
+						DerivedProperties derivedProperties = derivation.output.getDerivedProperties();
+						if (redlogProgram.canUse(derivedProperties)) {
+							derivationCache.put(redlogProgram, derivedProperties);
+						}
+					}
+				} else {
+					result.setInitialSystemConstraint(formatFormula(derived.getInitialSystemConstraint()));
+					result.setStrongestSystemProperty(formatFormula(derived.getStrongestSystemProperty()));
+					result.setWeakestComponentProperty(formatFormula(derived.getWeakestComponentProperty()));
+				}
+
+				List<String> resultList = new ArrayList<>();
+				for (ScriptOutput output : outputs) {
+					if (output.timedOut) {
+						resultList.add(null);
+						resultList.add(getTimeoutResult(output.runtime));
+					} else {
+						resultList.addAll(output.output.getPropertyResultStringList());
+					}
+				}
+				result.setPropertyResultStringList(resultList);
+
+				writeResults(new ResultWriter(result), result);
+				if (xmlFile != null) {
+					writeResults(new XmlWriter(xmlFile.getPath(), false), result);
+				}
+			}
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RedlogException) {
+				throw (RedlogException) e.getCause();
+			}
+			throw new RedlogException(result.getText(), e.getCause());
+		} catch (RedlogException e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new RedlogException(result.getText(), t);
+		} finally {
+			executor.shutdownNow();
+			if (monitor.isCanceled()) {
+				result.cancel();
+			} else {
+				result.done();
+			}
+			monitor.done();
+		}
+	}
+
+	private static class ScriptOutput {
+		final RedlogOutputThread output;
+		final boolean timedOut;
+		final long runtime;
+
+		ScriptOutput(RedlogOutputThread output, boolean timedOut, long runtime) {
+			this.output = output;
+			this.timedOut = timedOut;
+			this.runtime = runtime;
+		}
+	}
+
+	/**
+	 * Runs Redlog on one script until it ends, runs out of time or the
+	 * monitor is canceled, and deletes the script.
+	 */
+	private ScriptOutput runScript(File redlogFile, IProgressMonitor monitor) throws IOException,
+			InterruptedException {
+		Process process = null;
+		try {
+			long start = System.currentTimeMillis();
+			long deadline = timeout == null ? Long.MAX_VALUE : start + timeout * 1000L;
+			process = getRedlogProcessBuilder(redlogFile).start();
+			RedlogOutputThread outputThread = new RedlogOutputThread(process.getInputStream());
+			outputThread.start();
+			boolean ended = waitForOutput(outputThread, monitor, deadline);
+			if (!ended && process.isAlive()) {
+				// Only destroy the process if we have to since it can
+				// change the exit code on Windows
+				process.destroy();
+			}
+			int code = process.waitFor();
+			outputThread.join();
+			long runtime = System.currentTimeMillis() - start;
+
+			boolean timedOut = !ended && !monitor.isCanceled();
+			if (!ended) {
+				return new ScriptOutput(outputThread, timedOut, runtime);
+			}
+			if (outputThread.getThrowable() instanceof RedlogException) {
+				throw (RedlogException) outputThread.getThrowable();
+			} else if (outputThread.getThrowable() != null) {
+				throw new RedlogException("Error reading Redlog output", outputThread.getThrowable());
+			}
+			if (code != 0) {
+				throw new JKindException("Abnormal termination, exit code " + code);
+			}
+			return new ScriptOutput(outputThread, false, runtime);
+		} finally {
+			if (process != null && process.isAlive()) {
+				process.destroy();
+			}
+			ApiUtil.safeDelete(redlogFile);
+		}
+	}
+
+	private static String formatFormula(String formula) {
+		return formula == null ? "" : RedlogOutputThread.formatFormula(formula);
+	}
+
+	/**
+	 * The result of a proof that ran out of time, in the form Redlog prints
+	 * an unknown result in.
+	 */
+	private static String getTimeoutResult(long runtime) {
+		return "unknownTime: " + runtime + " ms";
 	}
 
 	/**
@@ -84,26 +266,23 @@ public class RedlogApi {
 	 * @throws redlog.RedlogException
 	 */
 	public void execute(File redlogFile, RedlogResult result, IProgressMonitor monitor) {
-		execute(this::getRedlogProcessBuilder, redlogFile, result, monitor);
+		execute(this::getRedlogProcessBuilder, redlogFile, xmlFile, result, monitor);
 	}
 	
 	
 	public static void execute(Function<File, ProcessBuilder> runCommand, File redlogFile,
 			RedlogResult result, IProgressMonitor monitor) {
-		File xmlFile = null;
+		execute(runCommand, redlogFile, null, result, monitor);
+	}
+
+	public static void execute(Function<File, ProcessBuilder> runCommand, File redlogFile, File xmlFile,
+			RedlogResult result, IProgressMonitor monitor) {
 		try {
-			xmlFile = getXmlFile(redlogFile);
-			ApiUtil.safeDelete(xmlFile);
-			if (xmlFile.exists()) {
-				throw new RedlogException("Existing XML file cannot be removed: " + xmlFile);
-			}
 			callRedlog(runCommand, redlogFile, xmlFile, result, monitor);
 		} catch (RedlogException e) {
 			throw e;
 		} catch (Throwable t) {
 			throw new RedlogException(result.getText(), t);
-		} finally {
-			ApiUtil.safeDelete(xmlFile);
 		}
 	}
 	
@@ -112,166 +291,72 @@ public class RedlogApi {
 			InterruptedException {
 		ProcessBuilder builder = runCommand.apply(redlogFile);
 		Process process = null;
-		try (RedlogXmlFileInputStream xmlStream = new RedlogXmlFileInputStream(xmlFile)) {
-			XmlParseThread parseThread = new XmlParseThread(xmlStream, result);
-
-			try {
-				result.start();
-				process = builder.start();
-				readRedlogOutputIntoResult(process, monitor, result);
-				// For now, the proofs of individual system properties are done in one single .redlog file, then to be shown on console.
-				// TODO: individual property may initiate an individual verification thread in separate file.
-				writeXmlFile(xmlFile, result);
-				parseThread.start();
-			} finally {
-				int code = 0;
-				if (process != null) {
-					if (monitor.isCanceled() && process.isAlive()) {
-						// Only destroy the process if we have to since it can
-						// change the exit code on Windows
-						process.destroy();
-					}
-					code = process.waitFor();
+		RedlogOutputThread outputThread = null;
+		try {
+			result.start();
+			process = builder.start();
+			outputThread = new RedlogOutputThread(process.getInputStream());
+			outputThread.start();
+			waitForOutput(outputThread, monitor, Long.MAX_VALUE);
+			if (!monitor.isCanceled()) {
+				if (outputThread.getThrowable() instanceof RedlogException) {
+					throw (RedlogException) outputThread.getThrowable();
+				} else if (outputThread.getThrowable() != null) {
+					throw new RedlogException("Error reading Redlog output", outputThread.getThrowable());
 				}
-
-				xmlStream.done();
-				parseThread.join();
-
-				if (monitor.isCanceled()) {
-					result.cancel();
-				} else {
-					result.done();
+				outputThread.setResults(result);
+				writeResults(new ResultWriter(result), result);
+				if (xmlFile != null) {
+					writeResults(new XmlWriter(xmlFile.getPath(), false), result);
 				}
-				monitor.done();
-
-				if (code != 0 && !monitor.isCanceled()) {
-					throw new JKindException("Abnormal termination, exit code " + code
-							+ System.lineSeparator() + result.getText());
+			}
+		} finally {
+			int code = 0;
+			if (process != null) {
+				if (monitor.isCanceled() && process.isAlive()) {
+					// Only destroy the process if we have to since it can
+					// change the exit code on Windows
+					process.destroy();
 				}
+				code = process.waitFor();
+			}
+			if (outputThread != null) {
+				outputThread.join();
 			}
 
-			if (parseThread.getThrowable() != null) {
-				throw new JKindException("Error parsing XML", parseThread.getThrowable());
+			if (monitor.isCanceled()) {
+				result.cancel();
+			} else {
+				result.done();
+			}
+			monitor.done();
+
+			if (code != 0 && !monitor.isCanceled()) {
+				throw new JKindException("Abnormal termination, exit code " + code
+						+ System.lineSeparator() + result.getText());
 			}
 		}
 	}
-	
-	private static void readRedlogOutputIntoResult(Process process, IProgressMonitor monitor, RedlogResult result) throws IOException {
-		BufferedReader r = new BufferedReader(new InputStreamReader(process.getInputStream()));
-		StringBuilder isc = new StringBuilder();
-		StringBuilder ssp = new StringBuilder();
-		StringBuilder wcp = new StringBuilder();
-		
-		// each property takes two elements,
-		// for inductive proof, first is base step result, second is inductive step result
-		// for direct proof, first is set to be null, second is the verification result.
-		List<String> resultList = new ArrayList<>();
-		boolean baseResultJustAdded = false;
-		
-		while (true) {
-			if (monitor.isCanceled()) {
-				return;
-			} else if (r.ready()) {
-				String line;
-				while (true) {
-					line = r.readLine();
-					if (line == null) {
-						try {
-							Thread.sleep(100);
-						} catch (InterruptedException e) {
-						}
-					} else if (line.contains("End-of-file") || line.contains("Quitting")) {
-						break;
-					} else if (line.startsWith("//begin printing the initial system constraint:")) {
-						// skip the comment line
-						line = r.readLine();
-						while (!line.startsWith("//end printing")) {
-							if (!line.contains(":")) {
-								isc.append(line);
-							}
-							line = r.readLine();
-						}
-					} else if (line.startsWith("//begin printing the strongest system property:")) {
-						// skip the comment line
-						line = r.readLine();
-						while (!line.startsWith("//end printing")) {
-							if (!line.contains(":")) {
-								ssp.append(line);
-							}
-							line = r.readLine();
-						}
-					} else if (line.startsWith("//begin printing the weakest component property:")) {
-						// skip the comment line
-						line = r.readLine();
-						while (!line.startsWith("//end printing")) {
-							if (!line.contains(":")) {
-								wcp.append(line);
-							}
-							line = r.readLine();
-						}
-					} else if (line.startsWith("//begin printing system property verification result:")) {
-						StringBuilder verificationResult = new StringBuilder();
-						// skip the comment line
-						line = r.readLine();
-						while (!line.startsWith("//end printing")) {
-							if (!line.contains(":")) {
-								verificationResult.append(line);
-							} else if (line.startsWith("Time: ")) {
-								// runtime
-								verificationResult.append(line);
-							} 
-							line = r.readLine();
-						}
-						resultList.add(null);
-						resultList.add(verificationResult.toString().replaceAll("[!\r\n]", "").replace(",", ",\r\n").replace("$", "\r\n"));
-					} else if (line.startsWith("//begin printing system property base verification result:")) {
-						StringBuilder bsr = new StringBuilder();
-						// skip the comment line
-						line = r.readLine();
-						while (!line.startsWith("//end printing")) {
-							if (!line.contains(":")) {
-								bsr.append(line);
-							} else if (line.startsWith("Time: ")) {
-								// runtime
-								bsr.append(line);
-							} 
-							line = r.readLine();
-						}
-						resultList.add(bsr.toString().replaceAll("[!\r\n]", "").replace(",", ",\r\n").replace("$", "\r\n"));
-						baseResultJustAdded = true;
-					} else if (line.startsWith("//begin printing system property inductive verification result:")) {
-						StringBuilder isr = new StringBuilder();	
-						// skip the comment line
-						line = r.readLine();
-						while (!line.startsWith("//end printing")) {
-							if (!line.contains(":")) {
-								isr.append(line);
-							} else if (line.startsWith("Time: ")) {
-								// runtime
-								isr.append(line);
-							} 
-							line = r.readLine();
-						}
-						if (baseResultJustAdded) {
-							resultList.add(isr.toString().replaceAll("[!\r\n]", "").replace(",", ",\r\n").replace("$", "\r\n"));
-						} else {
-							throw new RedlogException("Missing base step result."); 
-						}
-					} else { continue; }
-				}
-				result.setInitialSystemConstraint(isc.toString().replaceAll("[!\r\n]", "").replace("$", "\r\n").replace(" or ", "\r\n or \r\n"));
-				result.setStrongestSystemProperty(ssp.toString().replaceAll("[!\r\n]", "").replace("$", "\r\n").replace(" or ", "\r\n or \r\n"));		
-				result.setWeakestComponentProperty(wcp.toString().replaceAll("[!\r\n]", "").replace("$", "\r\n").replace(" or ", "\r\n or \r\n"));
-				result.setPropertyResultStringList(resultList);
-				return;
-			} else if (!process.isAlive()) {
-				return;
+
+	/**
+	 * Waits until Redlog closes its output, the deadline passes or the
+	 * monitor is canceled, and returns whether the output was closed. The
+	 * monitor cannot notify us, so it is checked whenever the wait times out;
+	 * the end of the output ends the wait at once.
+	 */
+	private static boolean waitForOutput(RedlogOutputThread outputThread, IProgressMonitor monitor,
+			long deadline) throws InterruptedException {
+		while (outputThread.isAlive() && !monitor.isCanceled()) {
+			long remaining = deadline - System.currentTimeMillis();
+			if (remaining <= 0) {
+				return false;
 			}
+			outputThread.join(Math.min(remaining, CANCEL_POLL_MILLIS));
 		}
+		return !outputThread.isAlive();
 	}
 
-	private static void writeXmlFile(File xmlFile, RedlogResult redlogResult) throws FileNotFoundException {
-		XmlWriter writer = new XmlWriter(xmlFile.getPath(), false);
+	private static void writeResults(Writer writer, RedlogResult redlogResult) {
 		writer.begin();
 		List<String> propertyResultStringList = redlogResult.getPropertyResultStringList();
 		if (propertyResultStringList.size() != 2* redlogResult.getPropertyResults().size()) {
@@ -336,10 +421,6 @@ public class RedlogApi {
 		return cex;
 	}
 	
-	private static File getXmlFile(File redlogFile) {
-		return new File(redlogFile.toString() + ".xml");
-	}
-	
 	public static File writeRedlogFile(String redlogProgram) {
 		File file = null;
 		try {
@@ -352,6 +433,29 @@ public class RedlogApi {
 		}
 	}
 	
+	/**
+	 * Streams the derivation script, or the script proving a property if the
+	 * property is not null, into a temporary file without building the whole
+	 * script in memory.
+	 */
+	private static File writeRedlogFile(RedlogProgram redlogProgram, String property, DerivedProperties derived) {
+		File file = null;
+		try {
+			file = File.createTempFile("redlog-api", ".txt");
+			try (java.io.Writer out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+				if (property == null) {
+					redlogProgram.writeDerivationScript(out);
+				} else {
+					redlogProgram.writePropertyScript(out, property, derived);
+				}
+			}
+			return file;
+		} catch (IOException | RedlogException e) {
+			ApiUtil.safeDelete(file);
+			throw new RedlogException("Cannot write to file: " + file, e);
+		}
+	}
+
 	private ProcessBuilder getRedlogProcessBuilder(File redlogFile) {
 		List<String> args = new ArrayList<>();
 		args.addAll(Arrays.asList(new String[] {"redpsl.bat", "<"}));
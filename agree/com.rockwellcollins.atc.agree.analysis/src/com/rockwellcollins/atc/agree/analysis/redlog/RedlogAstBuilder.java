@@ -1,9 +1,12 @@
 package com.rockwellcollins.atc.agree.analysis.redlog;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 import java.util.Stack;
 
 import jkind.lustre.BinaryExpr;
@@ -22,6 +25,7 @@ import com.rockwellcollins.atc.agree.analysis.ast.AgreeNode;
 import com.rockwellcollins.atc.agree.analysis.ast.AgreeProgram;
 import com.rockwellcollins.atc.agree.analysis.ast.AgreeStatement;
 import com.rockwellcollins.atc.agree.analysis.ast.AgreeVar;
+import com.rockwellcollins.atc.agree.analysis.lustre.visitors.ExprInterner;
 
 public class RedlogAstBuilder {
 	protected static final String guarSuffix = "__GUARANTEE";
@@ -44,6 +48,8 @@ public class RedlogAstBuilder {
 	private List<String> properties;
 	
 	private List<ExprConverter> exprLocalOrderInfoList;
+	// guarantees and assertions are compared by identity after interning
+	private ExprInterner interner;
 	
 	public RedlogProgram getContractRedlogProgram(AgreeProgram agreeProgram, String targetCompName) {
 		
@@ -60,6 +66,7 @@ public class RedlogAstBuilder {
         this.connectionAssertions = new ArrayList<>();
         this.properties = new ArrayList<>();
         this.exprLocalOrderInfoList = new ArrayList<>();
+        this.interner = new ExprInterner();
         for (AgreeVar var : agreeProgram.topNode.inputs) {
         	
         	sysInputs.add(new AgreeVar(var.id, var.type, var.reference, var.compInst));
@@ -122,23 +129,19 @@ public class RedlogAstBuilder {
 	        	// component assertion is treated as component guarantee 
 	        	// sometimes assertions contain duplicated guarantee(s), check before adding.
 	        	// TODO: figure out how duplication occurs in AgreeStatement, removing duplication should be easier than current implementation.
-	        	List<String> guaranteeDuplicationCheckList = new ArrayList<>();
+	        	Set<Expr> guaranteeDuplicationCheckList = Collections.newSetFromMap(new IdentityHashMap<Expr, Boolean>());
 	        	for (AgreeStatement guarantee : node.guarantees) {
 	        		ExprConverter exprInfo = new ExprConverter(guarantee.expr, prefix, agreeProgram.globalLustreNodes);
-	        		Expr prefixedGuarantee = exprInfo.getPrefixedExpr();
-	        		String prefixedGuaranteeString = prefixedGuarantee.toString();
-	        		if (! guaranteeDuplicationCheckList.contains(prefixedGuaranteeString)) {
-	        			guaranteeDuplicationCheckList.add(prefixedGuaranteeString);
+	        		Expr prefixedGuarantee = interner.intern(exprInfo.getPrefixedExpr());
+	        		if (guaranteeDuplicationCheckList.add(prefixedGuarantee)) {
 	        			this.exprLocalOrderInfoList.add(exprInfo);
 	        			componentGuarantees.add(exprInfo.getPrefixedExpr());
 	        		}
 	        	} 
 	        	for (AgreeStatement assertion : node.assertions) {
 	        		ExprConverter exprInfo = new ExprConverter(assertion.expr, prefix, agreeProgram.globalLustreNodes);
-	        		Expr prefixedAssertion = exprInfo.getPrefixedExpr();
-	        		String prefixedAssertionString = prefixedAssertion.toString();
-	        		if (! guaranteeDuplicationCheckList.contains(prefixedAssertionString)) {
-	        			guaranteeDuplicationCheckList.add(prefixedAssertionString);
+	        		Expr prefixedAssertion = interner.intern(exprInfo.getPrefixedExpr());
+	        		if (guaranteeDuplicationCheckList.add(prefixedAssertion)) {
 	        			this.exprLocalOrderInfoList.add(exprInfo);
 	        			componentGuarantees.add(exprInfo.getPrefixedExpr());
 	        		}
@@ -161,23 +164,19 @@ public class RedlogAstBuilder {
 	        	// component assertion is treated as component guarantee 
 	        	// sometimes assertions contain duplicated guarantee(s), check before adding.
 	        	// TODO: figure out how duplication occurs in AgreeStatement, removing duplication should be easier than current implementation.
-	        	List<String> guaranteeDuplicationCheckList = new ArrayList<>();
+	        	Set<Expr> guaranteeDuplicationCheckList = Collections.newSetFromMap(new IdentityHashMap<Expr, Boolean>());
 	        	for (AgreeStatement guarantee : node.guarantees) {
 	        		ExprConverter exprInfo = new ExprConverter(guarantee.expr, prefix, agreeProgram.globalLustreNodes);
-	        		Expr prefixedGuarantee = exprInfo.getPrefixedExpr();
-	        		String prefixedGuaranteeString = prefixedGuarantee.toString();
-	        		if (! guaranteeDuplicationCheckList.contains(prefixedGuaranteeString)) {
-	        			guaranteeDuplicationCheckList.add(prefixedGuaranteeString);
+	        		Expr prefixedGuarantee = interner.intern(exprInfo.getPrefixedExpr());
+	        		if (guaranteeDuplicationCheckList.add(prefixedGuarantee)) {
 	        			this.exprLocalOrderInfoList.add(exprInfo);
 	        			componentGuarantees.add(exprInfo.getPrefixedExpr());
 	        		}
 	        	} 
 	        	for (AgreeStatement assertion : node.assertions) {
 	        		ExprConverter exprInfo = new ExprConverter(assertion.expr, prefix, agreeProgram.globalLustreNodes);
-	        		Expr prefixedAssertion = exprInfo.getPrefixedExpr();
-	        		String prefixedAssertionString = prefixedAssertion.toString();
-	        		if (! guaranteeDuplicationCheckList.contains(prefixedAssertionString)) {
-	        			guaranteeDuplicationCheckList.add(prefixedAssertionString);
+	        		Expr prefixedAssertion = interner.intern(exprInfo.getPrefixedExpr());
+	        		if (guaranteeDuplicationCheckList.add(prefixedAssertion)) {
 	        			this.exprLocalOrderInfoList.add(exprInfo);
 	        			componentGuarantees.add(exprInfo.getPrefixedExpr());
 	        		}
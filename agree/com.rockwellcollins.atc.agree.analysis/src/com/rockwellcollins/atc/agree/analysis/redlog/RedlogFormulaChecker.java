@@ -0,0 +1,187 @@
+package com.rockwellcollins.atc.agree.analysis.redlog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Checks that a formula Redlog printed can be read back as Redlog input. The
+ * check is syntactic only: the text must be one expression of the operators
+ * Redlog prints, with balanced parentheses and no two operands next to each
+ * other, which catches formulas that were cut off or whose tokens were glued
+ * together when the output was read.
+ */
+public class RedlogFormulaChecker {
+	private static final Set<String> BOOLEAN_OPS = new HashSet<>(Arrays.asList("and", "or", "impl", "repl",
+			"equiv"));
+	private static final Set<String> RELATION_OPS = new HashSet<>(Arrays.asList("=", "<>", "<", "<=", ">", ">="));
+	private static final Set<String> SUM_OPS = new HashSet<>(Arrays.asList("+", "-"));
+	private static final Set<String> PRODUCT_OPS = new HashSet<>(Arrays.asList("*", "/"));
+	private static final Set<String> POWER_OPS = new HashSet<>(Arrays.asList("^", "**"));
+
+	private final List<String> tokens;
+	private int pos = 0;
+
+	private RedlogFormulaChecker(List<String> tokens) {
+		this.tokens = tokens;
+	}
+
+	/**
+	 * Returns whether the text is a formula Redlog can read, false for null.
+	 */
+	public static boolean isFormula(String text) {
+		if (text == null) {
+			return false;
+		}
+		List<String> tokens = tokenize(text);
+		if (tokens == null || tokens.isEmpty()) {
+			return false;
+		}
+		RedlogFormulaChecker checker = new RedlogFormulaChecker(tokens);
+		return checker.formula() && checker.pos == tokens.size();
+	}
+
+	private static List<String> tokenize(String text) {
+		List<String> tokens = new ArrayList<>();
+		int i = 0;
+		while (i < text.length()) {
+			char c = text.charAt(i);
+			int start = i;
+			if (Character.isWhitespace(c)) {
+				i++;
+				continue;
+			} else if (Character.isLetter(c) || c == '_') {
+				while (i < text.length()
+						&& (Character.isLetterOrDigit(text.charAt(i)) || text.charAt(i) == '_')) {
+					i++;
+				}
+			} else if (Character.isDigit(c)) {
+				while (i < text.length() && (Character.isDigit(text.charAt(i)) || text.charAt(i) == '.')) {
+					i++;
+				}
+			} else if (text.startsWith("<>", i) || text.startsWith("<=", i) || text.startsWith(">=", i)
+					|| text.startsWith("**", i)) {
+				i += 2;
+			} else if ("()[]{},=<>+-*/^".indexOf(c) >= 0) {
+				i++;
+			} else {
+				return null;
+			}
+			tokens.add(text.substring(start, i));
+		}
+		return tokens;
+	}
+
+	private String peek() {
+		return pos < tokens.size() ? tokens.get(pos) : null;
+	}
+
+	private boolean accept(String token) {
+		if (token.equals(peek())) {
+			pos++;
+			return true;
+		}
+		return false;
+	}
+
+	private boolean acceptAny(Set<String> ops) {
+		String token = peek();
+		if (token != null && ops.contains(token)) {
+			pos++;
+			return true;
+		}
+		return false;
+	}
+
+	private boolean formula() {
+		if (!negation()) {
+			return false;
+		}
+		while (acceptAny(BOOLEAN_OPS)) {
+			if (!negation()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean negation() {
+		if (accept("not")) {
+			return negation();
+		}
+		if (!sum()) {
+			return false;
+		}
+		return !acceptAny(RELATION_OPS) || sum();
+	}
+
+	private boolean sum() {
+		acceptAny(SUM_OPS);
+		if (!product()) {
+			return false;
+		}
+		while (acceptAny(SUM_OPS)) {
+			if (!product()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean product() {
+		if (!power()) {
+			return false;
+		}
+		while (acceptAny(PRODUCT_OPS)) {
+			if (!power()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean power() {
+		if (!primary()) {
+			return false;
+		}
+		return !acceptAny(POWER_OPS) || power();
+	}
+
+	private boolean primary() {
+		String token = peek();
+		if (token == null) {
+			return false;
+		}
+		if (accept("(")) {
+			return formula() && accept(")");
+		}
+		if (accept("{")) {
+			return arguments("}");
+		}
+		if (Character.isDigit(token.charAt(0))) {
+			pos++;
+			return true;
+		}
+		if ((Character.isLetter(token.charAt(0)) || token.charAt(0) == '_') && !BOOLEAN_OPS.contains(token)
+				&& !token.equals("not")) {
+			pos++;
+			// a function application such as ex(x, ...)
+			return !accept("(") || arguments(")");
+		}
+		return false;
+	}
+
+	private boolean arguments(String close) {
+		if (!formula()) {
+			return false;
+		}
+		while (accept(",")) {
+			if (!formula()) {
+				return false;
+			}
+		}
+		return accept(close);
+	}
+}
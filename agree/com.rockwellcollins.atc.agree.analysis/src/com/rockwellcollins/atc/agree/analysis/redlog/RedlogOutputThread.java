@@ -0,0 +1,204 @@
+package com.rockwellcollins.atc.agree.analysis.redlog;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the output of Redlog line by line as it is printed and collects the
+ * sections between "//begin printing ..." and "//end printing".
+ * Reading blocks until Redlog prints a line, so waiting for Redlog takes no
+ * processor time and each line is handled as soon as it arrives.
+ */
+public class RedlogOutputThread extends Thread {
+	private enum Section {
+		NONE, INITIAL_CONSTRAINT, STRONGEST_PROPERTY, WEAKEST_PROPERTY, RESULT, BASE_RESULT, INDUCTIVE_RESULT
+	}
+
+	private final InputStream output;
+	private volatile Throwable throwable;
+
+	private final StringBuilder isc = new StringBuilder();
+	private final StringBuilder ssp = new StringBuilder();
+	private final StringBuilder wcp = new StringBuilder();
+	// each property takes two elements,
+	// for inductive proof, first is base step result, second is inductive step result
+	// for direct proof, first is set to be null, second is the verification result.
+	private final List<String> resultList = new ArrayList<>();
+	private boolean baseResultJustAdded = false;
+
+	private Section section = Section.NONE;
+	private StringBuilder sectionText;
+	private volatile boolean finished = false;
+
+	private String initialSystemConstraint;
+	private String strongestSystemProperty;
+	private String weakestComponentProperty;
+
+	public RedlogOutputThread(InputStream output) {
+		super("Redlog Output");
+		this.output = output;
+	}
+
+	@Override
+	public void run() {
+		try (BufferedReader r = new BufferedReader(new InputStreamReader(output))) {
+			String line;
+			while ((line = r.readLine()) != null) {
+				// keep draining the output after the end or an error so
+				// Redlog does not block on a full pipe
+				if (!finished && throwable == null) {
+					try {
+						readLine(line);
+					} catch (RedlogException e) {
+						throwable = e;
+					}
+				}
+			}
+			if (throwable == null) {
+				finish();
+			}
+		} catch (Throwable t) {
+			throwable = t;
+		}
+	}
+
+	private void readLine(String line) {
+		if (section != Section.NONE) {
+			if (line.startsWith("//end printing")) {
+				endSection();
+			} else if (!line.contains(":") || (keepsRuntime(section) && line.startsWith("Time: "))) {
+				// Redlog breaks long output between tokens, so the line
+				// break is kept to separate the tokens when read back
+				sectionText.append(line).append('\n');
+			}
+		} else if (line.contains("End-of-file") || line.contains("Quitting")) {
+			finish();
+		} else if (line.startsWith("//begin printing the initial system constraint:")) {
+			beginSection(Section.INITIAL_CONSTRAINT, isc);
+		} else if (line.startsWith("//begin printing the strongest system property:")) {
+			beginSection(Section.STRONGEST_PROPERTY, ssp);
+		} else if (line.startsWith("//begin printing the weakest component property:")) {
+			beginSection(Section.WEAKEST_PROPERTY, wcp);
+		} else if (line.startsWith("//begin printing system property verification result:")) {
+			beginSection(Section.RESULT, new StringBuilder());
+		} else if (line.startsWith("//begin printing system property base verification result:")) {
+			beginSection(Section.BASE_RESULT, new StringBuilder());
+		} else if (line.startsWith("//begin printing system property inductive verification result:")) {
+			beginSection(Section.INDUCTIVE_RESULT, new StringBuilder());
+		}
+	}
+
+	private static boolean keepsRuntime(Section section) {
+		return section == Section.RESULT || section == Section.BASE_RESULT
+				|| section == Section.INDUCTIVE_RESULT;
+	}
+
+	private void beginSection(Section section, StringBuilder text) {
+		this.section = section;
+		this.sectionText = text;
+	}
+
+	private void endSection() {
+		switch (section) {
+		case RESULT:
+			resultList.add(null);
+			resultList.add(formatResult(sectionText));
+			break;
+		case BASE_RESULT:
+			resultList.add(formatResult(sectionText));
+			baseResultJustAdded = true;
+			break;
+		case INDUCTIVE_RESULT:
+			if (baseResultJustAdded) {
+				resultList.add(formatResult(sectionText));
+			} else {
+				throw new RedlogException("Missing base step result.");
+			}
+			break;
+		default:
+			break;
+		}
+		section = Section.NONE;
+		sectionText = null;
+	}
+
+	private void finish() {
+		if (finished) {
+			return;
+		}
+		initialSystemConstraint = formatFormula(isc);
+		strongestSystemProperty = formatFormula(ssp);
+		weakestComponentProperty = formatFormula(wcp);
+		finished = true;
+	}
+
+	private static String formatResult(StringBuilder text) {
+		return text.toString().replaceAll("[!\r\n]", "").replace(",", ",\r\n").replace("$", "\r\n");
+	}
+
+	static String formatFormula(CharSequence text) {
+		return text.toString().replaceAll("[!\r\n]", "").replace("$", "\r\n").replace(" or ", "\r\n or \r\n");
+	}
+
+	/**
+	 * Turns a formula printed by Redlog back into Redlog input before special
+	 * characters are escaped, or null if the formula was not printed
+	 * completely. With nat off Redlog ends a printed formula with "$".
+	 */
+	private static String toFormula(StringBuilder text) {
+		String formula = text.toString().replace("!", "").replaceAll("\\s+", " ").trim();
+		if (!formula.endsWith("$")) {
+			return null;
+		}
+		formula = formula.substring(0, formula.length() - 1).trim();
+		return formula.isEmpty() ? null : formula;
+	}
+
+	public Throwable getThrowable() {
+		return throwable;
+	}
+
+	/**
+	 * Copies what was read into a result. Must only be called once the
+	 * thread has ended without an error.
+	 */
+	public void setResults(RedlogResult result) {
+		result.setInitialSystemConstraint(initialSystemConstraint);
+		result.setStrongestSystemProperty(strongestSystemProperty);
+		result.setWeakestComponentProperty(weakestComponentProperty);
+		result.setPropertyResultStringList(resultList);
+	}
+
+	public String getInitialSystemConstraint() {
+		return initialSystemConstraint;
+	}
+
+	public String getStrongestSystemProperty() {
+		return strongestSystemProperty;
+	}
+
+	public String getWeakestComponentProperty() {
+		return weakestComponentProperty;
+	}
+
+	/**
+	 * Returns the derived properties as Redlog input, so later programs with
+	 * the same derivation can use them without eliminating quantifiers again.
+	 * Must only be called once the thread has ended without an error.
+	 */
+	public DerivedProperties getDerivedProperties() {
+		return new DerivedProperties(toFormula(isc), toFormula(ssp), toFormula(wcp));
+	}
+
+	/**
+	 * Returns two results for each property proved, the base step and
+	 * inductive step results of an inductive proof or null and the result of
+	 * a direct proof.
+	 */
+	public List<String> getPropertyResultStringList() {
+		return resultList;
+	}
+}
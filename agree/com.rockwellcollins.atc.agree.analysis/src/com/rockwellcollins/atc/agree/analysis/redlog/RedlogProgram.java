@@ -1,8 +1,12 @@
 package com.rockwellcollins.atc.agree.analysis.redlog;
 
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.HashMap;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Map.Entry;
 
 import com.google.common.base.Strings;
@@ -151,7 +155,91 @@ public class RedlogProgram {
     }
     
     public String toString() {
-    	StringBuilder content = new StringBuilder();
+    	StringWriter out = new StringWriter();
+    	write(out);
+    	return out.toString();
+    }
+
+    /**
+     * Writes the script that derives the properties and proves all
+     * properties. The script is streamed to the writer as it is generated.
+     */
+    public void write(Writer out) {
+    	PrintWriter content = new PrintWriter(new RedlogScriptWriter(out));
+    	appendDerivation(content, true, null);
+    	appendProofs(content, this.properties);
+    	flush(content);
+    }
+
+    /**
+     * Returns a script that only derives and prints the initial system
+     * constraint and the strongest system property, or the weakest component
+     * property.
+     */
+    public String getDerivationScript() {
+    	StringWriter out = new StringWriter();
+    	writeDerivationScript(out);
+    	return out.toString();
+    }
+
+    public void writeDerivationScript(Writer out) {
+    	PrintWriter content = new PrintWriter(new RedlogScriptWriter(out));
+    	appendDerivation(content, true, null);
+    	flush(content);
+    }
+
+    /**
+     * Returns a script that proves a single property. The script defines the
+     * derived properties the proof refers to without printing them, so the
+     * scripts of the properties and the derivation script can run in
+     * separate Redlog processes at the same time.
+     */
+    public String getPropertyScript(String property) {
+    	return getPropertyScript(property, null);
+    }
+
+    /**
+     * Returns a script that proves a single property using properties that
+     * were already derived, so the proof does not eliminate their quantifiers
+     * again. If derived is null or cannot be used by this program, the
+     * derivations are defined as in {@link #getPropertyScript(String)}.
+     */
+    public String getPropertyScript(String property, DerivedProperties derived) {
+    	StringWriter out = new StringWriter();
+    	writePropertyScript(out, property, derived);
+    	return out.toString();
+    }
+
+    public void writePropertyScript(Writer out, String property, DerivedProperties derived) {
+    	if (derived != null && !canUse(derived)) {
+    		derived = null;
+    	}
+    	PrintWriter content = new PrintWriter(new RedlogScriptWriter(out));
+    	appendDerivation(content, false, derived);
+    	appendProofs(content, Collections.singletonList(property));
+    	flush(content);
+    }
+
+    /**
+     * Returns whether derived properties hold every formula the scripts of
+     * this program refer to, each one a formula Redlog can read back.
+     */
+    public boolean canUse(DerivedProperties derived) {
+    	if (targetCompContract != null) {
+    		return RedlogFormulaChecker.isFormula(derived.getWeakestComponentProperty());
+    	}
+    	return (this.maxSysOrder == 0 || RedlogFormulaChecker.isFormula(derived.getInitialSystemConstraint()))
+    			&& RedlogFormulaChecker.isFormula(derived.getStrongestSystemProperty());
+    }
+
+    private static void flush(PrintWriter content) {
+    	// PrintWriter keeps the errors of the underlying writer to itself
+    	if (content.checkError()) {
+    		throw new RedlogException("Cannot write Redlog script");
+    	}
+    }
+
+    private void appendDerivation(PrintWriter content, boolean print, DerivedProperties derived) {
     	content.append("off echo$\r\n\r\noff nat$\r\n\r\n");
     	
     	String setDomain;
@@ -174,20 +262,26 @@ public class RedlogProgram {
     		// initial system constraints derivation
         	if (this.maxSysOrder > 0 ) {
         		content.append("__initialSystemConstraint:=");
-        		String initialSysCondition = this.getInitialSysConstraint();
-        		content.append(initialSysCondition + ";\r\n\r\n");
-            	content.append("\"//begin printing the initial system constraint:\";\r\n");
-            	content.append("rlqe __initialSystemConstraint;\r\n");
-            	content.append("\"//end printing\";\r\n\r\n");
+        		String initialSysCondition = derived == null ? this.getInitialSysConstraint()
+        				: derived.getInitialSystemConstraint();
+        		content.append(initialSysCondition).append(";\r\n\r\n");
+        		if (print) {
+            		content.append("\"//begin printing the initial system constraint:\";\r\n");
+            		content.append("rlqe __initialSystemConstraint;\r\n");
+            		content.append("\"//end printing\";\r\n\r\n");
+        		}
     		}
         	
         	// get the strongest system property for general steps
     		content.append("__strongestSystemProperty:=");
-        	String strongestSysProperty = this.getStrongestSysProperty();
-        	content.append(strongestSysProperty + ";\r\n\r\n");
-        	content.append("\"//begin printing the strongest system property:\";\r\n");
-        	content.append("rlqe __strongestSystemProperty;\r\n");
-        	content.append("\"//end printing\";\r\n\r\n");
+        	String strongestSysProperty = derived == null ? this.getStrongestSysProperty()
+        			: derived.getStrongestSystemProperty();
+        	content.append(strongestSysProperty).append(";\r\n\r\n");
+        	if (print) {
+        		content.append("\"//begin printing the strongest system property:\";\r\n");
+        		content.append("rlqe __strongestSystemProperty;\r\n");
+        		content.append("\"//end printing\";\r\n\r\n");
+        	}
     	}
     	// if targetCompContract != null, it means this compositional verification is initiated from a target component, 
     	// we then need to derive the weakest component contract for the target component
@@ -196,47 +290,52 @@ public class RedlogProgram {
     	else 
 		{
         	content.append("__weakestComponentProperty:=");
-        	String theWeakestCompProperty = this.getWeakestCompProperty();
-        	content.append(theWeakestCompProperty + ";\r\n\r\n");
+        	String theWeakestCompProperty = derived == null ? this.getWeakestCompProperty()
+        			: derived.getWeakestComponentProperty();
+        	content.append(theWeakestCompProperty).append(";\r\n\r\n");
         	int unpairedLeftParenthesisCount = 0;
         	content.append("__result:=");
         	for (VarDecl var : targetCompInputs) {
-        		content.append("all(" + var.id + ", ");
+        		content.append("all(").append(var.id).append(", ");
         		unpairedLeftParenthesisCount++;
         	}
         	for (VarDecl var : targetCompOutputs) {
-        		content.append("all(" + var.id + ", ");
+        		content.append("all(").append(var.id).append(", ");
         		unpairedLeftParenthesisCount++;
         	}
         	/*
         	for (String varId : sysInputsOutputsAtComponentLevel) {
-        		content.append("all(" + varId + ", ");
+        		content.append("all(").append(varId).append(", ");
         		unpairedLeftParenthesisCount++;
         	}
         	*/
         	content.append("(");
         	unpairedLeftParenthesisCount++;
         	
-        	content.append(zeroOrderContractToRedlogString(targetCompContract) + " impl (" + theWeakestCompProperty + ")");
-        	content.append(Strings.repeat(")", unpairedLeftParenthesisCount) + ";\r\n\r\n");
+        	content.append(zeroOrderContractToRedlogString(targetCompContract)).append(" impl (").append(theWeakestCompProperty).append(")");
+        	content.append(Strings.repeat(")", unpairedLeftParenthesisCount)).append(";\r\n\r\n");
         	// get the weakest component property
-        	content.append("\"//begin printing the weakest component property:\";\r\n");
-        	content.append("rlqe __weakestComponentProperty;\r\n");
-        	content.append("\"//end printing\";\r\n\r\n");
+        	if (print) {
+        		content.append("\"//begin printing the weakest component property:\";\r\n");
+        		content.append("rlqe __weakestComponentProperty;\r\n");
+        		content.append("\"//end printing\";\r\n\r\n");
+        	}
     	}
-    	
+    }
+
+    private void appendProofs(PrintWriter content, List<String> properties) {
     	// verification steps for non-time-dependent system and property
     	// TODO: is it possible to have time-dependent property for non-time-dependent system?
     	if (this.maxSysOrder == 0) {
-    		for (String property : this.properties) {
+    		for (String property : properties) {
             	int unpairedLeftParenthesisCount = 0;
-            	content.append("__result__of" + property + ":=");
+            	content.append("__result__of").append(property).append(":=");
         		for (VarDecl var : sysInputs) {
-            		content.append("all(" + var.id + ", ");
+            		content.append("all(").append(var.id).append(", ");
             		unpairedLeftParenthesisCount++;
             	}
             	for (VarDecl var : sysOutputs) {
-            		content.append("all(" + var.id + ", ");
+            		content.append("all(").append(var.id).append(", ");
             		unpairedLeftParenthesisCount++;
             	}
 	        	content.append("(");
@@ -248,10 +347,10 @@ public class RedlogProgram {
 	        			break;
 	        		}
 	        	}
-	        	content.append(Strings.repeat(")", unpairedLeftParenthesisCount) + ";\r\n\r\n");
+	        	content.append(Strings.repeat(")", unpairedLeftParenthesisCount)).append(";\r\n\r\n");
 	    		// prove the postulated system property
 	        	content.append("\"//begin printing system property verification result:\";\r\n");
-	        	content.append("rlqea __result__of" + property + ";\r\n");
+	        	content.append("rlqea __result__of").append(property).append(";\r\n");
 	            content.append("SHOWTIME;\r\n\r\n");
 	        	content.append("\"//end printing\";\r\n\r\n");
     		}
@@ -260,21 +359,21 @@ public class RedlogProgram {
     	// for time-dependent system and non-time dependent property
     	// TODO: what's the inductive formula for proving time-dependent property? 
     	else {
-    		for (String property : this.properties) {
+    		for (String property : properties) {
             	// base steps: for n-th order system, there're n initial steps
             	int unpairedLeftParenthesisCount = 0;
-            	content.append("__base__of" + property + ":=");
-        		String prefix = "";
+            	content.append("__base__of").append(property).append(":=");
+        		StringBuilder prefix = new StringBuilder();
         		for (int i = 0; i < this.maxSysOrder; i++) {
     	        	for (VarDecl var : sysInputs) {
-    	        		content.append("all(" + prefix + var.id + ", ");
+    	        		content.append("all(").append(prefix).append(var.id).append(", ");
     	        		unpairedLeftParenthesisCount++;
     	        	}
     	        	for (VarDecl var : sysOutputs) {
-    	        		content.append("all(" + prefix + var.id + ", ");
+    	        		content.append("all(").append(prefix).append(var.id).append(", ");
     	        		unpairedLeftParenthesisCount++;
     	        	}
-        			prefix += RedlogAstBuilder.nextSuffix;
+        			prefix.append(RedlogAstBuilder.nextSuffix);
         		}
         		content.append("(");
 	        	unpairedLeftParenthesisCount++;
@@ -285,29 +384,29 @@ public class RedlogProgram {
 	        			break;
 	        		}
 	        	}
-        		content.append(Strings.repeat(")", unpairedLeftParenthesisCount) + ";\r\n\r\n");
+        		content.append(Strings.repeat(")", unpairedLeftParenthesisCount)).append(";\r\n\r\n");
             	// prove the postulated system property
             	content.append("\"//begin printing system property base verification result:\";\r\n");
-            	content.append("rlqea __base__of" + property + ";\r\n");
+            	content.append("rlqea __base__of").append(property).append(";\r\n");
                 content.append("SHOWTIME;\r\n");
             	content.append("\"//end printing\";\r\n\r\n");
 
             	// inductive step: A => G AGREE contract should be interpreted as Global(A) => Globally(G)
         		// for n-th order system, there're n pre steps
         		// reset prefix and unpairedLeftParenthesisCount
-            	content.append("__inductive__of" + property + ":=");
-        		prefix = "";
+            	content.append("__inductive__of").append(property).append(":=");
+        		prefix.setLength(0);
         		unpairedLeftParenthesisCount = 0;
         		for (int i = 0; i <= this.maxSysOrder; i++) {
     	        	for (VarDecl var : sysInputs) {
-    	        		content.append("all(" + prefix + var.id + ", ");
+    	        		content.append("all(").append(prefix).append(var.id).append(", ");
     	        		unpairedLeftParenthesisCount++;
     	        	}
     	        	for (VarDecl var : sysOutputs) {
-    	        		content.append("all(" + prefix + var.id + ", ");
+    	        		content.append("all(").append(prefix).append(var.id).append(", ");
     	        		unpairedLeftParenthesisCount++;
     	        	}
-        			prefix += RedlogAstBuilder.preSuffix;
+        			prefix.append(RedlogAstBuilder.preSuffix);
         		}
         		content.append("(");
 	        	unpairedLeftParenthesisCount++;
@@ -320,40 +419,39 @@ public class RedlogProgram {
 	        			// remove name mark before adding to the content.
 	        			if (nameMarkedContractAssumeExpr == null) {
 	        				String originalGuaranteeStr = nameMarkedContractGuaranteeExpr.toString();
-	        				content.append(getOneStepShiftedExprStr(originalGuaranteeStr, systemContracts.get(contractVar).name, false).replace(contract.name + "__", "") + ")");
-		    	        	content.append(" impl " +  originalGuaranteeStr.replace(contract.name + "__", ""));
+	        				content.append(getOneStepShiftedExprStr(originalGuaranteeStr, systemContracts.get(contractVar).name, false).replace(contract.name + "__", "")).append(")");
+		    	        	content.append(" impl ").append(originalGuaranteeStr.replace(contract.name + "__", ""));
 	        			} else {
 	        				String originalAssumeStr = nameMarkedContractAssumeExpr.toString();
 	        				String originalGuaranteeStr = nameMarkedContractGuaranteeExpr.toString();	        				
-	        				content.append(getOneStepShiftedExprStr(originalAssumeStr, systemContracts.get(contractVar).name, false).replace(contract.name + "__", "") + " and ");
-	        				content.append(getOneStepShiftedExprStr(originalGuaranteeStr, systemContracts.get(contractVar).name, false).replace(contract.name + "__", "") + " and ");
-	        				content.append(originalAssumeStr.replace(contract.name + "__", "") + ")");
-	        				content.append(" impl " +  originalGuaranteeStr.replace(contract.name + "__", ""));
+	        				content.append(getOneStepShiftedExprStr(originalAssumeStr, systemContracts.get(contractVar).name, false).replace(contract.name + "__", "")).append(" and ");
+	        				content.append(getOneStepShiftedExprStr(originalGuaranteeStr, systemContracts.get(contractVar).name, false).replace(contract.name + "__", "")).append(" and ");
+	        				content.append(originalAssumeStr.replace(contract.name + "__", "")).append(")");
+	        				content.append(" impl ").append(originalGuaranteeStr.replace(contract.name + "__", ""));
 	        			}
         				break;
 	        		}
 	        	}
-        		content.append(Strings.repeat(")", unpairedLeftParenthesisCount) + ";\r\n\r\n");
+        		content.append(Strings.repeat(")", unpairedLeftParenthesisCount)).append(";\r\n\r\n");
         		content.append("\"//begin printing system property inductive verification result:\";\r\n");
-            	content.append("rlqea __inductive__of" + property + ";\r\n");
+            	content.append("rlqea __inductive__of").append(property).append(";\r\n");
                 content.append("SHOWTIME;\r\n");
             	content.append("\"//end printing\";\r\n\r\n");
     		}
     	}
-    	
-    	//TODO: need also to replace other special chars in the future
-    	return content.toString().replace(".val", "").replace("=>", "impl").replace("_", "!_");
     }
-    
+
     private String getInitialSysConstraint() {
     	StringBuilder explicitComposedInitConstraintB4QE = new StringBuilder();
     	int unpairedLeftParenthesisCount = 0;
+    	String nextShift = RedlogAstBuilder.nextSuffix.toLowerCase();
+    	StringBuilder orderShift = new StringBuilder();
     	for (VarDecl var : contextCompVariables) {
-    		String orderShiftString = "";
+    		orderShift.setLength(0);
     		for (int i = 0; i < this.maxSysOrder; i++) {
-    			explicitComposedInitConstraintB4QE.append("ex(" + orderShiftString.toLowerCase() + var.id + ", ");
+    			explicitComposedInitConstraintB4QE.append("ex(").append(orderShift).append(var.id).append(", ");
     			unpairedLeftParenthesisCount++;
-    			orderShiftString += RedlogAstBuilder.nextSuffix;
+    			orderShift.append(nextShift);
     		}
     	}
     	explicitComposedInitConstraintB4QE.append("(");
@@ -361,7 +459,7 @@ public class RedlogProgram {
     	for (AgreeStatement conn : connectionAssertions) {
     		List<String> forwardShiftedExprStrList = getOrderShiftedConnStrList(conn.expr, this.maxSysOrder, true);
     		for (int i = 0; i < forwardShiftedExprStrList.size(); i++) {
-    			explicitComposedInitConstraintB4QE.append(forwardShiftedExprStrList.get(i) + " and ");
+    			explicitComposedInitConstraintB4QE.append(forwardShiftedExprStrList.get(i)).append(" and ");
     		}
     	}
     	for (Contract contract : contextCompContracts) {
@@ -370,7 +468,7 @@ public class RedlogProgram {
    			for (Expr expr : contract.ensures) {
    				List<String> forwardShiftedExprStrList = getForwardShiftedExprStrList(expr, contract.name, this.maxSysOrder);
    				for (int i = 0; i < forwardShiftedExprStrList.size(); i++) {
-       				explicitComposedInitConstraintB4QE.append(forwardShiftedExprStrList.get(i) + " and ");
+       				explicitComposedInitConstraintB4QE.append(forwardShiftedExprStrList.get(i)).append(" and ");
        			}
    			}
     	}
@@ -385,12 +483,14 @@ public class RedlogProgram {
     {
     	StringBuilder explicitComposedContractB4QE = new StringBuilder();
     	int unpairedLeftParenthesisCount = 0;
+    	String preShift = RedlogAstBuilder.preSuffix.toLowerCase();
+    	StringBuilder orderShift = new StringBuilder();
     	for (VarDecl var : contextCompVariables) {
-    		String orderShiftString = "";
+    		orderShift.setLength(0);
     		for (int i = 0; i <= this.maxSysOrder; i++) {
-    			explicitComposedContractB4QE.append("ex(" + orderShiftString.toLowerCase() + var.id + ", ");
+    			explicitComposedContractB4QE.append("ex(").append(orderShift).append(var.id).append(", ");
     			unpairedLeftParenthesisCount++;
-    			orderShiftString += RedlogAstBuilder.preSuffix;
+    			orderShift.append(preShift);
     		}
     	}
     	
@@ -399,12 +499,13 @@ public class RedlogProgram {
     	for (AgreeStatement conn : connectionAssertions) {
     		List<String> backwardShiftedExprStrList = getOrderShiftedConnStrList(conn.expr, this.maxSysOrder, false);
     		for (int i = 0; i < backwardShiftedExprStrList.size(); i++) {
-    			explicitComposedContractB4QE.append(backwardShiftedExprStrList.get(i) + " and ");
+    			explicitComposedContractB4QE.append(backwardShiftedExprStrList.get(i)).append(" and ");
     		}
     	}
     	for (Contract contract : contextCompContracts) {
     		if (this.maxSysOrder == 0) {
-    			explicitComposedContractB4QE.append(zeroOrderContractToRedlogString(contract) + " and ");
+    			appendZeroOrderContract(explicitComposedContractB4QE, contract);
+    			explicitComposedContractB4QE.append(" and ");
     		}
     		else {
     			// assume no assumption, 
@@ -412,7 +513,7 @@ public class RedlogProgram {
     			for (Expr expr : contract.ensures) {
     				List<String> orderShiftedExprStrList = getBackwardShiftedExprStrList(expr, contract.name, this.maxSysOrder);
     				for (int i = 0; i < orderShiftedExprStrList.size(); i++) {
-        				explicitComposedContractB4QE.append(orderShiftedExprStrList.get(i) + " and ");
+        				explicitComposedContractB4QE.append(orderShiftedExprStrList.get(i)).append(" and ");
         			}
     			}
     		}
@@ -430,29 +531,31 @@ public class RedlogProgram {
     	StringBuilder explicitComposedContractB4QE = new StringBuilder();
     	int unpairedLeftParenthesisCount = 0;
     	for (VarDecl var : contextCompVariables) {
-    		explicitComposedContractB4QE.append("all(" + var.id + ", ");
+    		explicitComposedContractB4QE.append("all(").append(var.id).append(", ");
     		unpairedLeftParenthesisCount++;
     	}
     	for (VarDecl var : sysInputs) {
-    		explicitComposedContractB4QE.append("all(" + var.id + ", ");
+    		explicitComposedContractB4QE.append("all(").append(var.id).append(", ");
     		unpairedLeftParenthesisCount++;
     	}
     	for (VarDecl var : sysOutputs) {
-    		explicitComposedContractB4QE.append("all(" + var.id + ", ");
+    		explicitComposedContractB4QE.append("all(").append(var.id).append(", ");
     		unpairedLeftParenthesisCount++;
     	}
     	explicitComposedContractB4QE.append("(");
     	unpairedLeftParenthesisCount ++;
     	explicitComposedContractB4QE.append("("); // left parenthesis for the implication 
     	for (AgreeStatement conn : connectionAssertions) {
-    		explicitComposedContractB4QE.append(conn.expr.toString() + " and ");
+    		explicitComposedContractB4QE.append(conn.expr).append(" and ");
     	}
     	for (Contract contract : contextCompContracts) {
-    		explicitComposedContractB4QE.append(zeroOrderContractToRedlogString(contract) + " and ");
+    		appendZeroOrderContract(explicitComposedContractB4QE, contract);
+    		explicitComposedContractB4QE.append(" and ");
     	}
     	explicitComposedContractB4QE.setLength(explicitComposedContractB4QE.length() - 5);
     	explicitComposedContractB4QE.append(")"); // right parenthesis for the implication
-    	explicitComposedContractB4QE.append(" impl " + zeroOrderContractToRedlogString(systemContracts.entrySet().iterator().next().getValue()));
+    	explicitComposedContractB4QE.append(" impl ");
+    	appendZeroOrderContract(explicitComposedContractB4QE, systemContracts.entrySet().iterator().next().getValue());
     	
     	explicitComposedContractB4QE.append(Strings.repeat(")", unpairedLeftParenthesisCount));
     	return explicitComposedContractB4QE.toString();
@@ -485,13 +588,13 @@ public class RedlogProgram {
     	} else {
     		Expr nameMarkedContractExpr = getNameMarkedContractExpr(contract);
     		List<String> forwardShiftedExprStrList = getForwardShiftedExprStrList(nameMarkedContractExpr, contract.name, this.maxSysOrder);
-			String contractStr = "";
+			StringBuilder contractStr = new StringBuilder();
     		for (String exprStr : forwardShiftedExprStrList) {
     			// first replaceAll() eliminates the Pre__ terms in the initial constraint (and leaves only numbers), second replaceAll() eliminate the numerical initial values and leaves non-Pre__ vars.
     			// third replace() remove the contract name prefix, system-level contract doesn't need that in verification steps
-				contractStr += exprStr.replaceAll("(\\s->\\s)(Pre__([^)]+))", "").replaceAll("(\\w+)(.(\\w+))?(\\s->\\s)", "").replace(contract.name + "__", "");
+				contractStr.append(exprStr.replaceAll("(\\s->\\s)(Pre__([^)]+))", "").replaceAll("(\\w+)(.(\\w+))?(\\s->\\s)", "").replace(contract.name + "__", ""));
 			}
-    		return contractStr;
+    		return contractStr.toString();
     	}
     }
     
@@ -534,25 +637,30 @@ public class RedlogProgram {
     
     //TODO: rewrite this method to avoid using expr.toString() method, every expr should create an ExprConverter obj first (to be able to deal with Lustre nodes functions.). 
     private static String zeroOrderContractToRedlogString(Contract contract) {
-		String assumption = "";
-		String guarantee = "";
+    	StringBuilder contractStr = new StringBuilder();
+    	appendZeroOrderContract(contractStr, contract);
+    	return contractStr.toString();
+    }
+
+    private static void appendZeroOrderContract(StringBuilder contractStr, Contract contract) {
 		if (!contract.requires.isEmpty()) {
-			for (Expr require : contract.requires) {
-				assumption += require.toString() + " and ";
-			}
-			assumption = assumption.substring(0, assumption.length() - 5);
+			contractStr.append("(");
+			appendConjunction(contractStr, contract.requires);
+			contractStr.append(" impl ");
 		}
 		// ensures cannot be empty
-		if (!contract.ensures.isEmpty()) { 
-			for (Expr ensure : contract.ensures) {
-				guarantee += ensure.toString() + " and ";
-			}
-			guarantee = guarantee.substring(0, guarantee.length() - 5);
+		appendConjunction(contractStr, contract.ensures);
+		if (!contract.requires.isEmpty()) {
+			contractStr.append(")");
 		}
-		if (assumption.equals("")) {
-			return guarantee;
-		} else {
-			return "(" + assumption + " impl " + guarantee + ")";
+    }
+
+    private static void appendConjunction(StringBuilder str, List<Expr> exprs) {
+		for (int i = 0; i < exprs.size(); i++) {
+			if (i > 0) {
+				str.append(" and ");
+			}
+			str.append(exprs.get(i));
 		}
     }
     
@@ -0,0 +1,101 @@
+package com.rockwellcollins.atc.agree.analysis.redlog;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Turns the text of a Redlog script into Redlog input as it is written:
+ * ".val" is dropped, "=>" becomes "impl" and "_" is escaped as "!_". At
+ * most three characters that may start a ".val" or "=>" are held back until
+ * the next write or until the writer is flushed.
+ */
+public class RedlogScriptWriter extends FilterWriter {
+	//TODO: need also to replace other special chars in the future
+	private final StringBuilder pending = new StringBuilder();
+
+	public RedlogScriptWriter(Writer out) {
+		super(out);
+	}
+
+	@Override
+	public void write(int c) throws IOException {
+		pending.append((char) c);
+		if (endsWith(".val")) {
+			pending.setLength(pending.length() - 4);
+		} else if (endsWith("=>")) {
+			pending.setLength(pending.length() - 2);
+			pending.append("impl");
+		}
+		writePending(getHeldLength());
+	}
+
+	@Override
+	public void write(char[] cbuf, int off, int len) throws IOException {
+		for (int i = off; i < off + len; i++) {
+			write(cbuf[i]);
+		}
+	}
+
+	@Override
+	public void write(String str, int off, int len) throws IOException {
+		for (int i = off; i < off + len; i++) {
+			write(str.charAt(i));
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		writePending(0);
+		super.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		writePending(0);
+		super.close();
+	}
+
+	private boolean endsWith(String suffix) {
+		int start = pending.length() - suffix.length();
+		return start >= 0 && pending.indexOf(suffix, start) == start;
+	}
+
+	/**
+	 * Returns the length of the longest end of the pending text that may
+	 * still become ".val" or "=>".
+	 */
+	private int getHeldLength() {
+		for (int length = Math.min(3, pending.length()); length > 0; length--) {
+			if (endStarts(".val", length) || endStarts("=>", length)) {
+				return length;
+			}
+		}
+		return 0;
+	}
+
+	private boolean endStarts(String str, int length) {
+		if (length > str.length()) {
+			return false;
+		}
+		int start = pending.length() - length;
+		for (int i = 0; i < length; i++) {
+			if (pending.charAt(start + i) != str.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void writePending(int held) throws IOException {
+		int length = pending.length() - held;
+		for (int i = 0; i < length; i++) {
+			char c = pending.charAt(i);
+			if (c == '_') {
+				out.write('!');
+			}
+			out.write(c);
+		}
+		pending.delete(0, length);
+	}
+}
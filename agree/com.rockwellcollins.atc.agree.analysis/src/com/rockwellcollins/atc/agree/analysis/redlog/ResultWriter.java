@@ -0,0 +1,56 @@
+package com.rockwellcollins.atc.agree.analysis.redlog;
+
+import java.util.Collections;
+
+import jkind.api.results.PropertyResult;
+import jkind.results.Counterexample;
+import jkind.results.InvalidProperty;
+import jkind.results.Property;
+import jkind.results.UnknownProperty;
+import jkind.results.ValidProperty;
+
+/**
+ * Writes the answers of Redlog straight into the property results of a
+ * {@link RedlogResult}.
+ */
+public class ResultWriter extends Writer {
+	private final RedlogResult result;
+
+	public ResultWriter(RedlogResult result) {
+		this.result = result;
+	}
+
+	@Override
+	public void begin() {
+	}
+
+	@Override
+	public void end() {
+	}
+
+	@Override
+	public void writeValid(String prop, double runtime) {
+		setProperty(new ValidProperty(prop, "valid", 0, runtime, null));
+	}
+
+	@Override
+	public void writeInvalid(String prop, Counterexample cex, double runtime) {
+		setProperty(new InvalidProperty(prop, null, cex, Collections.<String> emptyList(), runtime));
+	}
+
+	@Override
+	public void writeUnknown(String prop, double runtime) {
+		setProperty(new UnknownProperty(prop, 0, null, runtime));
+	}
+
+	private void setProperty(Property prop) {
+		PropertyResult pr = result.getPropertyResult(prop.getName());
+		if (pr == null) {
+			pr = result.addProperty(prop.getName());
+			if (pr == null) {
+				return;
+			}
+		}
+		pr.setProperty(prop);
+	}
+}
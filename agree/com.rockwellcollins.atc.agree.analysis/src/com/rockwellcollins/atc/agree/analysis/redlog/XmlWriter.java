@@ -28,7 +28,7 @@ public class XmlWriter extends Writer {
 
 	@Override
 	public void end() {
-		out.println("</Results>");
+		out.println("</RedlogResults>");
 		out.close();
 	}
 
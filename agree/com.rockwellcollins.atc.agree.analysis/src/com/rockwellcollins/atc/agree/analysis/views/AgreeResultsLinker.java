@@ -1,5 +1,6 @@
 package com.rockwellcollins.atc.agree.analysis.views;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -14,13 +15,15 @@ import com.rockwellcollins.atc.agree.agree.AgreeSubclause;
 import com.rockwellcollins.atc.agree.analysis.redlog.RedlogProgram;
 
 public class AgreeResultsLinker {
-    private Map<AnalysisResult, Program> programs = new HashMap<>();
-    private Map<AnalysisResult, RedlogProgram> redlogPrograms = new HashMap<>();
-    private Map<AnalysisResult, ComponentImplementation> components = new HashMap<>();
-    private Map<AnalysisResult, AgreeSubclause> contracts = new HashMap<>();
-    private Map<AnalysisResult, Layout> layouts = new HashMap<>();
-    private Map<AnalysisResult, Map<String, EObject>> referenceMaps = new HashMap<>();
-    private Map<AnalysisResult, String> logs = new HashMap<>();
+    private Map<AnalysisResult, Program> programs = Collections.synchronizedMap(new HashMap<>());
+    private Map<AnalysisResult, RedlogProgram> redlogPrograms = Collections.synchronizedMap(new HashMap<>());
+    private Map<AnalysisResult, ComponentImplementation> components =
+            Collections.synchronizedMap(new HashMap<>());
+    private Map<AnalysisResult, AgreeSubclause> contracts = Collections.synchronizedMap(new HashMap<>());
+    private Map<AnalysisResult, Layout> layouts = Collections.synchronizedMap(new HashMap<>());
+    private Map<AnalysisResult, Map<String, EObject>> referenceMaps =
+            Collections.synchronizedMap(new HashMap<>());
+    private Map<AnalysisResult, String> logs = Collections.synchronizedMap(new HashMap<>());
     
     public void setProgram(AnalysisResult result, Program program) {
         programs.put(result, program);
@@ -0,0 +1,52 @@
+package com.rockwellcollins.atc.agree.ui;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.xtext.builder.builderState.IBuilderState;
+import org.eclipse.xtext.resource.IResourceDescription;
+import org.eclipse.xtext.ui.editor.IDirtyStateManager;
+import org.osgi.framework.BundleContext;
+
+import com.google.inject.Injector;
+import com.rockwellcollins.atc.agree.linking.WorkspaceNameIndex;
+import com.rockwellcollins.atc.agree.ui.internal.AgreeActivator;
+
+/**
+ * Keeps the workspace name index of the linker in step with the Xtext
+ * indexes: the index is told about every change of the builder state and of
+ * the unsaved editors, and is disposed when the plug-in stops.
+ */
+public class AgreeUiActivator extends AgreeActivator {
+
+    private final List<IResourceDescription.Event.Source> sources = new ArrayList<>();
+
+    @Override
+    protected Injector createInjector(String language) {
+        Injector injector = super.createInjector(language);
+        addIndexListener(injector.getInstance(IBuilderState.class));
+        addIndexListener(injector.getInstance(IDirtyStateManager.class));
+        return injector;
+    }
+
+    private void addIndexListener(IResourceDescription.Event.Source source) {
+        synchronized (sources) {
+            if (!sources.contains(source)) {
+                source.addListener(WorkspaceNameIndex.getInstance());
+                sources.add(source);
+            }
+        }
+    }
+
+    @Override
+    public void stop(BundleContext context) throws Exception {
+        synchronized (sources) {
+            for (IResourceDescription.Event.Source source : sources) {
+                source.removeListener(WorkspaceNameIndex.getInstance());
+            }
+            sources.clear();
+        }
+        WorkspaceNameIndex.dispose();
+        super.stop(context);
+    }
+}
@@ -1,14 +1,8 @@
 package com.rockwellcollins.atc.agree.linking;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
-import org.eclipse.core.resources.IProject;
-import org.eclipse.core.resources.IProjectDescription;
-import org.eclipse.core.resources.IWorkspaceRoot;
-import org.eclipse.core.resources.ResourcesPlugin;
-import org.eclipse.core.runtime.CoreException;
 import org.eclipse.emf.common.util.URI;
 import org.eclipse.emf.ecore.EClass;
 import org.eclipse.emf.ecore.EObject;
@@ -79,14 +73,12 @@ public class AgreeLinkingService extends PropertiesLinkingService {
             }
 
             // This code will only link to objects in the projects visible from the current project
-            Iterable<IEObjectDescription> allObjectTypes = EMFIndexRetrieval
-                    .getAllEObjectsOfTypeInWorkspace(context, reference.getEReferenceType());
-
+            WorkspaceNameIndex index = WorkspaceNameIndex.getInstance();
             String contextProject = context.eResource().getURI().segment(1);
-            List<String> visibleProjects = getVisibleProjects(contextProject);
+            List<String> visibleProjects = index.getVisibleProjects(contextProject);
 
-            for (IEObjectDescription eod : allObjectTypes) {
-                if (sameName(eod, name) && isVisible(eod, visibleProjects)) {
+            for (IEObjectDescription eod : index.getObjects(context, reference.getEReferenceType(), name)) {
+                if (isVisible(eod, visibleProjects)) {
                     EObject res = eod.getEObjectOrProxy();
                     res = EcoreUtil.resolve(res, context.eResource().getResourceSet());
                     if (!Aadl2Util.isNull(res)) {
@@ -99,34 +91,12 @@ public class AgreeLinkingService extends PropertiesLinkingService {
         return super.getLinkedObjects(context, reference, node);
     }
 
-    private static boolean sameName(IEObjectDescription eod, String name) {
-        return eod.getName().toString().equalsIgnoreCase(name);
-    }
-
     private static boolean isVisible(IEObjectDescription eod, List<String> visibleProjects) {
         URI uri = eod.getEObjectURI();
         String project = uri.segment(1);
         return visibleProjects.contains(project);
     }
 
-    private static List<String> getVisibleProjects(String contextProjectName) {
-        List<String> result = new ArrayList<>();
-        result.add(contextProjectName);
-
-        IWorkspaceRoot root = ResourcesPlugin.getWorkspace().getRoot();
-        IProject contextProject = root.getProject(URI.decode(contextProjectName));
-        try {
-            IProjectDescription description = contextProject.getDescription();
-            for (IProject referencedProject : description.getReferencedProjects()) {
-                result.add(URI.encodeSegment(referencedProject.getName(), false));
-            }
-        } catch (CoreException ex) {
-            ex.printStackTrace();
-        }
-
-        return result;
-    }
-
     private static List<EObject> findUnitLiteralAsList(Element context, String name) {
         EObject e = findUnitLiteral(context, name);
         if (e == null) {
@@ -0,0 +1,166 @@
+package com.rockwellcollins.atc.agree.linking;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IProjectDescription;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IWorkspaceRoot;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.emf.common.notify.impl.AdapterImpl;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.xtext.resource.IEObjectDescription;
+import org.eclipse.xtext.resource.IResourceDescription;
+import org.osate.xtext.aadl2.properties.util.EMFIndexRetrieval;
+
+/**
+ * Indexes the objects of the workspace by type and by lower case name, and
+ * remembers the projects visible from each project, so a lookup costs a hash
+ * access instead of a pass over every object of the type in the workspace.
+ * <p>
+ * The objects are indexed separately for each resource set, since the
+ * resource set decides which Xtext index is searched: the builder state for
+ * the builder, or the index including unsaved editors for an editor. The
+ * objects of a resource set are kept in an adapter of it, so they go away
+ * with the resource set. They are dropped when an Xtext index reports a
+ * change; the UI plug-in registers the index with the builder state and the
+ * dirty state manager.
+ * The visible projects are dropped when a resource of the workspace changes.
+ */
+public class WorkspaceNameIndex implements IResourceChangeListener, IResourceDescription.Event.Listener {
+
+    private static WorkspaceNameIndex instance;
+
+    private final Map<String, List<String>> visibleProjects = new HashMap<>();
+
+    /**
+     * Replaced on every reported change. Objects indexed before the last
+     * change are cleared when their resource set is next used.
+     */
+    private Object generation = new Object();
+
+    private static class ObjectsByName extends AdapterImpl {
+        private final Map<EClass, Map<String, List<IEObjectDescription>>> byType = new HashMap<>();
+        private Object generation;
+
+        @Override
+        public boolean isAdapterForType(Object type) {
+            return type == ObjectsByName.class;
+        }
+    }
+
+    public static synchronized WorkspaceNameIndex getInstance() {
+        if (instance == null) {
+            instance = new WorkspaceNameIndex();
+            ResourcesPlugin.getWorkspace().addResourceChangeListener(instance,
+                    IResourceChangeEvent.POST_CHANGE);
+        }
+        return instance;
+    }
+
+    /**
+     * Stops listening to the workspace and forgets the index.
+     */
+    public static synchronized void dispose() {
+        if (instance != null) {
+            ResourcesPlugin.getWorkspace().removeResourceChangeListener(instance);
+            instance = null;
+        }
+    }
+
+    @Override
+    public synchronized void resourceChanged(IResourceChangeEvent event) {
+        // without the UI plug-in no Xtext index reports its changes
+        generation = new Object();
+        visibleProjects.clear();
+    }
+
+    @Override
+    public synchronized void descriptionsChanged(IResourceDescription.Event event) {
+        generation = new Object();
+    }
+
+    /**
+     * Returns the objects of the given type whose name equals the given one
+     * ignoring case, in the order of the workspace index.
+     */
+    public synchronized List<IEObjectDescription> getObjects(EObject context, EClass type, String name) {
+        Map<EClass, Map<String, List<IEObjectDescription>>> byType = getObjectsByType(context);
+        Map<String, List<IEObjectDescription>> byName = byType.get(type);
+        if (byName == null) {
+            byName = new HashMap<>();
+            for (IEObjectDescription eod : EMFIndexRetrieval.getAllEObjectsOfTypeInWorkspace(context, type)) {
+                String key = eod.getName().toString().toLowerCase();
+                List<IEObjectDescription> eods = byName.get(key);
+                if (eods == null) {
+                    eods = new ArrayList<>();
+                    byName.put(key, eods);
+                }
+                eods.add(eod);
+            }
+            byType.put(type, byName);
+        }
+
+        List<IEObjectDescription> eods = byName.get(name.toLowerCase());
+        if (eods == null) {
+            return Collections.emptyList();
+        }
+        return eods;
+    }
+
+    private Map<EClass, Map<String, List<IEObjectDescription>>> getObjectsByType(EObject context) {
+        ResourceSet resourceSet = context.eResource().getResourceSet();
+        if (resourceSet == null) {
+            return new HashMap<>();
+        }
+        ObjectsByName objects = (ObjectsByName) EcoreUtil.getAdapter(resourceSet.eAdapters(), ObjectsByName.class);
+        if (objects == null) {
+            objects = new ObjectsByName();
+            objects.generation = generation;
+            resourceSet.eAdapters().add(objects);
+        } else if (objects.generation != generation) {
+            objects.byType.clear();
+            objects.generation = generation;
+        }
+        return objects.byType;
+    }
+
+    /**
+     * Returns the given project together with the projects it references,
+     * as encoded URI segments.
+     */
+    public synchronized List<String> getVisibleProjects(String contextProjectName) {
+        List<String> result = visibleProjects.get(contextProjectName);
+        if (result != null) {
+            return result;
+        }
+
+        result = new ArrayList<>();
+        result.add(contextProjectName);
+
+        IWorkspaceRoot root = ResourcesPlugin.getWorkspace().getRoot();
+        IProject contextProject = root.getProject(URI.decode(contextProjectName));
+        try {
+            IProjectDescription description = contextProject.getDescription();
+            for (IProject referencedProject : description.getReferencedProjects()) {
+                result.add(URI.encodeSegment(referencedProject.getName(), false));
+            }
+        } catch (CoreException ex) {
+            ex.printStackTrace();
+        }
+
+        result = Collections.unmodifiableList(result);
+        visibleProjects.put(contextProjectName, result);
+        return result;
+    }
+}
@@ -16,6 +16,8 @@ import org.eclipse.emf.ecore.EReference;
 import org.eclipse.xtext.scoping.IScope;
 import org.eclipse.xtext.scoping.Scopes;
 import org.eclipse.xtext.scoping.impl.SimpleScope;
+import org.eclipse.xtext.util.IResourceScopeCache;
+import org.eclipse.xtext.util.Tuples;
 import org.osate.aadl2.AadlPackage;
 import org.osate.aadl2.AnnexLibrary;
 import org.osate.aadl2.AnnexSubclause;
@@ -36,6 +38,9 @@ import org.osate.aadl2.ThreadSubcomponent;
 import org.osate.aadl2.impl.FeatureGroupImpl;
 import org.osate.annexsupport.AnnexUtil;
 
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+
 import com.rockwellcollins.atc.agree.agree.AgreeContract;
 import com.rockwellcollins.atc.agree.agree.AgreeContractLibrary;
 import com.rockwellcollins.atc.agree.agree.AgreeContractSubclause;
@@ -71,6 +76,15 @@ import com.rockwellcollins.atc.agree.agree.Type;
 public class AgreeScopeProvider extends
         org.osate.xtext.aadl2.properties.scoping.PropertiesScopeProvider {
 
+    /**
+     * Holds the elements of contracts and the owned elements of classifiers,
+     * which every dotted reference in a contract would otherwise rebuild. An
+     * entry only holds elements of the resource of its contract or classifier
+     * and is dropped when that resource changes.
+     */
+    @Inject
+    private IResourceScopeCache cache;
+
     IScope scope_NamedElement(FnDefExpr ctx, EReference ref) {
         return Scopes.scopeFor(ctx.getArgs(), getScope(ctx.eContainer(), ref));
     }
@@ -150,14 +164,23 @@ public class AgreeScopeProvider extends
                 if (subclause instanceof AgreeContractSubclause) {
                     IScope scopeOfType = getScope(((AgreeContractSubclause) subclause).getContract(),
                             ref);
-                    return Scopes.scopeFor(getAllElementsFromSpecs(ctx.getSpecs()), scopeOfType);
+                    return Scopes.scopeFor(getContractElements(ctx), scopeOfType);
                 }
             }
         }
-        return Scopes.scopeFor(getAllElementsFromSpecs(ctx.getSpecs()), IScope.NULLSCOPE);
+        return Scopes.scopeFor(getContractElements(ctx), IScope.NULLSCOPE);
                 
     }
     
+    private Set<Element> getContractElements(final AgreeContract contract) {
+        return cache.get(Tuples.create("getContractElements", contract), contract.eResource(),
+                new Provider<Set<Element>>() {
+                    @Override
+                    public Set<Element> get() {
+                        return Collections.unmodifiableSet(getAllElementsFromSpecs(contract.getSpecs()));
+                    }
+                });
+    }
 
     private Set<Element> getAllElementsFromSpecs(EList<SpecStatement> specs) {
         Set<Element> result = new HashSet<>();
@@ -318,7 +341,7 @@ public class AgreeScopeProvider extends
         	}
         	
         	if(container instanceof AgreeContract){
-        	    Set<Element> specs = getAllElementsFromSpecs(((AgreeContract) container).getSpecs());
+        	    Set<Element> specs = getContractElements((AgreeContract) container);
         	    result.addAll(specs);
         	}else{
         	    if(!(container instanceof NodeDefExpr)){
@@ -341,7 +364,7 @@ public class AgreeScopeProvider extends
         		container = container.eContainer();
         	}
         	if(container instanceof AgreeContract){
-        		Set<Element> specs = getAllElementsFromSpecs(((AgreeContract) container).getSpecs());
+        		Set<Element> specs = getContractElements((AgreeContract) container);
         		result.addAll(specs);
         	}else{
                 if(!(container instanceof NodeDefExpr)){
@@ -369,22 +392,11 @@ public class AgreeScopeProvider extends
 
         //check to see what the type the container is and behave accordingly
         if (container instanceof Classifier) {
-            Classifier component = (Classifier) container;
-            for (Element el : component.getOwnedElements()) {
-            	if(!(el instanceof DefaultAnnexSubclause)){
-            		result.add(el);
-            	}
+            Set<Element> elements = getClassifierElements((Classifier) container);
+            if (result.isEmpty()) {
+                return elements;
             }
-            for (Element el : component.getAllFeatures()) {
-                result.add(el);
-            }
-            //if the classifier is a component implementation, get all the elements
-            //from the implementation as well as the type
-            if(component instanceof ComponentImplementation){
-                getAllAgreeElements(result, component);
-            	component = ((ComponentImplementation)component).getType();
-            }
-            getAllAgreeElements(result, component);
+            result.addAll(elements);
             
         }else if(container instanceof AadlPackage){
         	AadlPackage aadlPack = (AadlPackage)container;
@@ -413,19 +425,58 @@ public class AgreeScopeProvider extends
             }
 
             assert (container instanceof AgreeContract);
-            result = getAllElementsFromSpecs(((AgreeContract) container).getSpecs());
+            result = getContractElements((AgreeContract) container);
 
         }
 
         return result;
     }
 
+    /**
+     * Returns the elements of a classifier that a dotted reference into it
+     * can name: its owned elements other than annexes, its features and the
+     * elements of the AGREE contracts of the classifier and, for an
+     * implementation, of its type. Inherited features and the contracts can
+     * live in other resources, so they are gathered on each call and only the
+     * owned elements are kept with the classifier's resource.
+     */
+    private Set<Element> getClassifierElements(Classifier component) {
+        Set<Element> result = new HashSet<>(getOwnedClassifierElements(component));
+        for (Element el : component.getAllFeatures()) {
+            result.add(el);
+        }
+        //if the classifier is a component implementation, get all the elements
+        //from the implementation as well as the type
+        if(component instanceof ComponentImplementation){
+            getAllAgreeElements(result, component);
+        	component = ((ComponentImplementation)component).getType();
+        }
+        getAllAgreeElements(result, component);
+        return result;
+    }
+
+    private Set<Element> getOwnedClassifierElements(final Classifier component) {
+        return cache.get(Tuples.create("getOwnedClassifierElements", component), component.eResource(),
+                new Provider<Set<Element>>() {
+                    @Override
+                    public Set<Element> get() {
+                        Set<Element> result = new HashSet<>();
+                        for (Element el : component.getOwnedElements()) {
+                            if(!(el instanceof DefaultAnnexSubclause)){
+                                result.add(el);
+                            }
+                        }
+                        return Collections.unmodifiableSet(result);
+                    }
+                });
+    }
+
     private void getAllAgreeElements(Set<Element> result, Classifier component) {
         for (AnnexSubclause subclause : AnnexUtil.getAllAnnexSubclauses(component, AgreePackage.eINSTANCE.getAgreeContractSubclause())) {
             if (subclause instanceof AgreeContractSubclause) {
                 AgreeContractSubclause agreeSubclause = (AgreeContractSubclause)subclause;
                 AgreeContract contract = (AgreeContract)agreeSubclause.getContract();
-                result.addAll(getAllElementsFromSpecs(contract.getSpecs()));
+                result.addAll(getContractElements(contract));
             }
         }
     }
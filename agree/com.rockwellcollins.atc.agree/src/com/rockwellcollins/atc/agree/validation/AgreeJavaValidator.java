@@ -109,6 +109,28 @@ import com.rockwellcollins.atc.agree.agree.UnaryExpr;
 public class AgreeJavaValidator extends AbstractAgreeJavaValidator {
 	private Set<CallDef> checkedRecCalls = new HashSet<>();
 
+	private static final String TYPE_CACHE = AgreeJavaValidator.class.getName() + ".typeCache";
+
+	/**
+	 * Returns the types inferred so far in the current validation run, which
+	 * all checks share, or null outside of a validation run. The context map
+	 * only lives for the validation of one resource, so no type is kept
+	 * across an edit.
+	 */
+	@SuppressWarnings("unchecked")
+	private Map<EObject, AgreeType> getTypeCache() {
+		Map<Object, Object> context = getContext();
+		if (context == null) {
+			return null;
+		}
+		Map<EObject, AgreeType> cache = (Map<EObject, AgreeType>) context.get(TYPE_CACHE);
+		if (cache == null) {
+			cache = new HashMap<>();
+			context.put(TYPE_CACHE, cache);
+		}
+		return cache;
+	}
+
 	@Override
 	protected boolean isResponsible(Map<Object, Object> context, EObject eObject) {
 		return (eObject.eClass().getEPackage() == AgreePackage.eINSTANCE);
@@ -987,6 +1009,34 @@ public class AgreeJavaValidator extends AbstractAgreeJavaValidator {
 		checkMultiAssignEq(eqStat, eqStat.getLhs(), eqStat.getExpr());
 	}
 
+	@Check(CheckType.FAST)
+	public void checkEqCycles(AgreeContract contract) {
+		for (List<EqStatement> cycle : EqCycleFinder.getCycles(contract)) {
+			StringBuilder cycleStr = new StringBuilder();
+			for (EqStatement eq : cycle) {
+				cycleStr.append(getLhsNames(eq));
+				cycleStr.append(" -> ");
+			}
+			cycleStr.append(getLhsNames(cycle.get(0)));
+
+			for (EqStatement eq : cycle) {
+				warning(eq, "The eq statement for '" + getLhsNames(eq)
+						+ "' may be part of a cyclic definition: " + cycleStr);
+			}
+		}
+	}
+
+	private String getLhsNames(EqStatement eq) {
+		StringBuilder names = new StringBuilder();
+		String sep = "";
+		for (Arg arg : eq.getLhs()) {
+			names.append(sep);
+			names.append(arg.getName());
+			sep = ", ";
+		}
+		return names.toString();
+	}
+
 	@Check(CheckType.FAST)
 	public void checkNameOverlap(AgreeContract contract) {
 
@@ -1492,6 +1542,19 @@ public class AgreeJavaValidator extends AbstractAgreeJavaValidator {
 	}
 
 	private AgreeType getAgreeType(NamedElement namedEl) {
+		Map<EObject, AgreeType> cache = getTypeCache();
+		if (cache == null) {
+			return computeAgreeType(namedEl);
+		}
+		AgreeType type = cache.get(namedEl);
+		if (type == null) {
+			type = computeAgreeType(namedEl);
+			cache.put(namedEl, type);
+		}
+		return type;
+	}
+
+	private AgreeType computeAgreeType(NamedElement namedEl) {
 		if (namedEl instanceof Property) {
 			Property propVal = (Property) namedEl;
 			PropertyType propType = propVal.getPropertyType();
@@ -1714,6 +1777,19 @@ public class AgreeJavaValidator extends AbstractAgreeJavaValidator {
 	}
 
 	private AgreeType getAgreeType(Expr expr) {
+		Map<EObject, AgreeType> cache = getTypeCache();
+		if (cache == null) {
+			return computeAgreeType(expr);
+		}
+		AgreeType type = cache.get(expr);
+		if (type == null) {
+			type = computeAgreeType(expr);
+			cache.put(expr, type);
+		}
+		return type;
+	}
+
+	private AgreeType computeAgreeType(Expr expr) {
 		if (expr instanceof BinaryExpr) {
 			return getAgreeType((BinaryExpr) expr);
 		} else if (expr instanceof FnCallExpr) {
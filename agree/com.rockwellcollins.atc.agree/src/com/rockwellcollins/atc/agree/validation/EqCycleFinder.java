@@ -1,28 +1,170 @@
 package com.rockwellcollins.atc.agree.validation;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import org.eclipse.emf.common.notify.Adapter;
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.util.EContentAdapter;
+import org.eclipse.xtext.EcoreUtil2;
+import org.osate.aadl2.NamedElement;
 
 import com.rockwellcollins.atc.agree.agree.AgreeContract;
+import com.rockwellcollins.atc.agree.agree.Arg;
 import com.rockwellcollins.atc.agree.agree.EqStatement;
+import com.rockwellcollins.atc.agree.agree.NestedDotID;
+import com.rockwellcollins.atc.agree.agree.PreExpr;
+import com.rockwellcollins.atc.agree.agree.PrevExpr;
 import com.rockwellcollins.atc.agree.agree.SpecStatement;
 
+/**
+ * Finds cycles among the eq statements of a contract that do not pass
+ * through a delay. An eq statement depends on another one if its expression
+ * refers to a variable the other one defines outside of {@code pre} and the
+ * delayed argument of {@code prev}.
+ * <p>
+ * The dependencies are kept in an adapter on the contract, so they live as
+ * long as the contract in its resource. The adapter drops the dependencies
+ * of an eq statement when anything inside of it changes, so after an edit
+ * only the changed statements are walked again.
+ */
 public class EqCycleFinder {
 
-    public static List<EqStatement> noDelayCycles(AgreeContract contract){
-        List<EqStatement> eqs = new ArrayList<>();
-        for(SpecStatement spec : contract.getSpecs()){
-            if(spec instanceof EqStatement){
-                eqs.add((EqStatement) spec);
+    public static List<EqStatement> noDelayCycles(AgreeContract contract) {
+        List<List<EqStatement>> cycles = getCycles(contract);
+        return cycles.isEmpty() ? null : cycles.get(0);
+    }
+
+    /**
+     * Returns one cycle for every group of eq statements that depend on each
+     * other without a delay. A cycle starts with the first statement of its
+     * group in the contract and ends with the one that refers back to it.
+     */
+    public static List<List<EqStatement>> getCycles(AgreeContract contract) {
+        return getDependencyGraph(contract).getCycles(contract);
+    }
+
+    private static DependencyGraph getDependencyGraph(AgreeContract contract) {
+        synchronized (contract) {
+            for (Adapter adapter : contract.eAdapters()) {
+                if (adapter instanceof DependencyGraph) {
+                    return (DependencyGraph) adapter;
+                }
             }
+            DependencyGraph graph = new DependencyGraph();
+            contract.eAdapters().add(graph);
+            return graph;
         }
-        return getFirstCycle(eqs);
     }
 
-    private static List<EqStatement> getFirstCycle(List<EqStatement> eqs) {
-        // TODO Auto-generated method stub
-        return null;
+    private static Set<EqStatement> getDependencies(EqStatement eq) {
+        Set<EqStatement> deps = new LinkedHashSet<>();
+        Deque<EObject> worklist = new ArrayDeque<>();
+        if (eq.getExpr() != null) {
+            worklist.push(eq.getExpr());
+        }
+        while (!worklist.isEmpty()) {
+            EObject obj = worklist.pop();
+            if (obj instanceof PreExpr) {
+                continue;
+            }
+            if (obj instanceof PrevExpr) {
+                if (((PrevExpr) obj).getInit() != null) {
+                    worklist.push(((PrevExpr) obj).getInit());
+                }
+                continue;
+            }
+            if (obj instanceof NestedDotID) {
+                NamedElement base = ((NestedDotID) obj).getBase();
+                if (base instanceof Arg && !base.eIsProxy() && base.eContainer() instanceof EqStatement) {
+                    deps.add((EqStatement) base.eContainer());
+                }
+            }
+            worklist.addAll(obj.eContents());
+        }
+        return deps;
+    }
+
+    private static class DependencyGraph extends EContentAdapter {
+        private final Map<EqStatement, Set<EqStatement>> deps = new HashMap<>();
+        private List<List<EqStatement>> cycles;
+
+        @Override
+        public void notifyChanged(Notification notification) {
+            super.notifyChanged(notification);
+            if (notification.isTouch() || notification.getEventType() == Notification.RESOLVE
+                    || notification.getEventType() == Notification.REMOVING_ADAPTER) {
+                return;
+            }
+            synchronized (this) {
+                cycles = null;
+                if (notification.getNotifier() instanceof EObject) {
+                    EqStatement eq = EcoreUtil2.getContainerOfType((EObject) notification.getNotifier(),
+                            EqStatement.class);
+                    if (eq != null) {
+                        deps.remove(eq);
+                    }
+                }
+            }
+        }
+
+        public synchronized List<List<EqStatement>> getCycles(AgreeContract contract) {
+            if (cycles != null) {
+                return cycles;
+            }
+
+            List<EqStatement> eqs = new ArrayList<>();
+            for (SpecStatement spec : contract.getSpecs()) {
+                if (spec instanceof EqStatement) {
+                    eqs.add((EqStatement) spec);
+                }
+            }
+            deps.keySet().retainAll(eqs);
+
+            Map<EqStatement, Integer> index = new HashMap<>();
+            for (EqStatement eq : eqs) {
+                index.put(eq, index.size());
+            }
+            int[][] graph = new int[eqs.size()][];
+            for (EqStatement eq : eqs) {
+                Set<EqStatement> eqDeps = deps.get(eq);
+                if (eqDeps == null) {
+                    eqDeps = getDependencies(eq);
+                    deps.put(eq, eqDeps);
+                }
+                int[] succs = new int[eqDeps.size()];
+                int numSuccs = 0;
+                for (EqStatement dep : eqDeps) {
+                    Integer i = index.get(dep);
+                    if (i != null) {
+                        succs[numSuccs++] = i;
+                    }
+                }
+                graph[index.get(eq)] = Arrays.copyOf(succs, numSuccs);
+            }
+
+            List<List<EqStatement>> result = new ArrayList<>();
+            for (int[] component : GraphCycles.getStronglyConnectedComponents(graph)) {
+                List<Integer> cycle = GraphCycles.getCycle(graph, component);
+                if (cycle != null) {
+                    List<EqStatement> cycleEqs = new ArrayList<>();
+                    for (int i : cycle) {
+                        cycleEqs.add(eqs.get(i));
+                    }
+                    result.add(cycleEqs);
+                }
+            }
+            cycles = Collections.unmodifiableList(result);
+            return cycles;
+        }
     }
-    
 }
@@ -0,0 +1,120 @@
+package com.rockwellcollins.atc.agree.validation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds cycles in a graph given as the successors of each vertex, where the
+ * vertices are numbered from zero.
+ */
+public class GraphCycles {
+
+    /**
+     * Returns the strongly connected components of a graph given as the
+     * successors of each vertex, using Tarjan's algorithm with explicit
+     * stacks. Each component is sorted by vertex number.
+     */
+    public static List<int[]> getStronglyConnectedComponents(int[][] graph) {
+        int n = graph.length;
+        int[] order = new int[n];
+        int[] low = new int[n];
+        int[] nextEdge = new int[n];
+        boolean[] onStack = new boolean[n];
+        int[] stack = new int[n];
+        int[] path = new int[n];
+        int stackSize = 0;
+        int pathSize = 0;
+        int counter = 1;
+        List<int[]> components = new ArrayList<>();
+
+        for (int root = 0; root < n; root++) {
+            if (order[root] != 0) {
+                continue;
+            }
+            order[root] = low[root] = counter++;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+            path[pathSize++] = root;
+
+            while (pathSize > 0) {
+                int v = path[pathSize - 1];
+                if (nextEdge[v] < graph[v].length) {
+                    int w = graph[v][nextEdge[v]++];
+                    if (order[w] == 0) {
+                        order[w] = low[w] = counter++;
+                        stack[stackSize++] = w;
+                        onStack[w] = true;
+                        path[pathSize++] = w;
+                    } else if (onStack[w]) {
+                        low[v] = Math.min(low[v], order[w]);
+                    }
+                    continue;
+                }
+
+                pathSize--;
+                if (pathSize > 0) {
+                    int parent = path[pathSize - 1];
+                    low[parent] = Math.min(low[parent], low[v]);
+                }
+                if (low[v] == order[v]) {
+                    int size = 0;
+                    while (stack[stackSize - 1 - size] != v) {
+                        size++;
+                    }
+                    size++;
+                    int[] component = Arrays.copyOfRange(stack, stackSize - size, stackSize);
+                    stackSize -= size;
+                    for (int w : component) {
+                        onStack[w] = false;
+                    }
+                    Arrays.sort(component);
+                    components.add(component);
+                }
+            }
+        }
+        return components;
+    }
+
+    /**
+     * Returns a shortest cycle through the first vertex of a strongly
+     * connected component, without repeating that vertex at the end, or null
+     * if the component is a single vertex without a self loop.
+     */
+    public static List<Integer> getCycle(int[][] graph, int[] component) {
+        int start = component[0];
+        Set<Integer> members = new HashSet<>();
+        for (int v : component) {
+            members.add(v);
+        }
+
+        // the vertex each reached vertex was first reached from
+        Map<Integer, Integer> reached = new HashMap<>();
+        Deque<Integer> queue = new ArrayDeque<>();
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            int v = queue.poll();
+            for (int w : graph[v]) {
+                if (w == start) {
+                    LinkedList<Integer> cycle = new LinkedList<>();
+                    for (Integer u = v; u != null; u = reached.get(u)) {
+                        cycle.addFirst(u);
+                    }
+                    return cycle;
+                }
+                if (members.contains(w) && !reached.containsKey(w)) {
+                    reached.put(w, v);
+                    queue.add(w);
+                }
+            }
+        }
+        return null;
+    }
+}